@@ -0,0 +1,65 @@
+package de.tecca.structureLib;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// StructureCapture.readSection's loops over a cuboid selection, with and without the per-block contains() check.
+// The chunk snapshot is left out, so only the check differs. Run with: mvn -Pjmh test-compile exec:exec
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CaptureContainsBenchmark {
+    private static final int SIZE_X = 128;
+    private static final int SIZE_Y = 64;
+    private static final int SIZE_Z = 128;
+
+    private Region region;
+    private BlockVector3 origin;
+    private BlockVector3 max;
+
+    @Setup
+    public void setUp() {
+        region = new CuboidRegion(BlockVector3.at(0, 0, 0), BlockVector3.at(SIZE_X - 1, SIZE_Y - 1, SIZE_Z - 1));
+        origin = region.getMinimumPoint();
+        max = region.getMaximumPoint();
+    }
+
+    @Benchmark
+    public StructureVolume perBlockContains() {
+        return capture(true);
+    }
+
+    @Benchmark
+    public StructureVolume cuboidSkip() {
+        return capture(false);
+    }
+
+    private StructureVolume capture(boolean checkContains) {
+        StructureVolume volume = new StructureVolume(SIZE_X, SIZE_Y, SIZE_Z);
+        int stone = volume.idFor("STONE", null);
+
+        for (int sectionY = origin.getY() & ~15; sectionY <= max.getY(); sectionY += 16) {
+            for (int sectionZ = origin.getZ() & ~15; sectionZ <= max.getZ(); sectionZ += 16) {
+                for (int sectionX = origin.getX() & ~15; sectionX <= max.getX(); sectionX += 16) {
+                    for (int y = Math.max(sectionY, origin.getY()); y <= Math.min(sectionY + 15, max.getY()); y++) {
+                        for (int z = Math.max(sectionZ, origin.getZ()); z <= Math.min(sectionZ + 15, max.getZ()); z++) {
+                            for (int x = Math.max(sectionX, origin.getX()); x <= Math.min(sectionX + 15, max.getX()); x++) {
+                                if (checkContains && !region.contains(BlockVector3.at(x, y, z))) continue;
+
+                                volume.set(x - origin.getX(), y - origin.getY(), z - origin.getZ(), stone);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return volume;
+    }
+}
@@ -6,14 +6,29 @@ public class BlockData {
     private final int[] pos;
     private final String material;
     private Map<String, Object> properties;
+    private boolean frozen;
 
     public BlockData(int[] pos, String material) {
         this.pos = pos;
         this.material = material;
     }
 
-    public int[] getPos() { return pos; }
+    public int[] getPos() { return frozen && pos != null ? pos.clone() : pos; }
+    // Uncopied, for iteration inside the library that only reads it
+    int[] pos() { return pos; }
     public String getMaterial() { return material; }
     public Map<String, Object> getProperties() { return properties; }
-    public void setProperties(Map<String, Object> properties) { this.properties = properties; }
+
+    public void setProperties(Map<String, Object> properties) {
+        if (frozen) {
+            throw new IllegalStateException("Block belongs to a built structure; change it through Structure.toBuilder()");
+        }
+        this.properties = properties;
+    }
+
+    void freeze() {
+        if (frozen) return;
+        frozen = true;
+        properties = BlockEntity.readOnlyCopy(properties);
+    }
 }
@@ -1,12 +1,17 @@
 package de.tecca.structureLib;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class BlockEntity {
     private final int[] pos;
     private final String type;
-    private final Map<String, Object> data;
+    private Map<String, Object> data;
+    private boolean frozen;
 
     public BlockEntity(int[] pos, String type) {
         this.pos = pos;
@@ -14,7 +19,39 @@ public class BlockEntity {
         this.data = new HashMap<>();
     }
 
-    public int[] getPos() { return pos; }
+    public int[] getPos() { return frozen && pos != null ? pos.clone() : pos; }
     public String getType() { return type; }
+
+    // Read-only once a built structure holds the block entity
     public Map<String, Object> getData() { return data; }
+
+    void freeze() {
+        if (frozen) return;
+        frozen = true;
+        data = readOnlyCopy(data);
+    }
+
+    // Nested maps and lists are copied too, so nothing reachable from the result can change
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> readOnlyCopy(Map<String, Object> data) {
+        return (Map<String, Object>) readOnlyValue(data);
+    }
+
+    private static Object readOnlyValue(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(entry.getKey(), readOnlyValue(entry.getValue()));
+            }
+            return Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object element : list) {
+                copy.add(readOnlyValue(element));
+            }
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
 }
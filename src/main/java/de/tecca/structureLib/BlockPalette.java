@@ -0,0 +1,173 @@
+package de.tecca.structureLib;
+
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+class BlockPalette {
+    // Every distinct block state exists once, however many structures and palettes use it
+    private static final Map<Entry, Entry> INTERNED = new ConcurrentHashMap<>();
+
+    private final List<Entry> entries;
+
+    // Open addressing over entries and their ids, so lookups compare material and properties without building a key
+    private Entry[] slots;
+    private int[] slotIds;
+
+    // A sealed palette is shared by several volumes and only ever looked up
+    private boolean sealed;
+
+    public BlockPalette() {
+        this.entries = new ArrayList<>();
+        this.slots = new Entry[16];
+        this.slotIds = new int[16];
+    }
+
+    public static Entry intern(String material, Map<String, Object> properties) {
+        Entry entry = new Entry(material, properties);
+        Entry existing = INTERNED.putIfAbsent(entry, entry);
+        return existing != null ? existing : entry;
+    }
+
+    // Only a new block state creates (and copies into) an entry
+    public int idFor(String material, Map<String, Object> properties) {
+        if (properties != null && properties.isEmpty()) properties = null;
+
+        int hash = Entry.hash(material, properties);
+        int slot = find(hash, material, properties);
+        if (slots[slot] != null) return slotIds[slot];
+
+        if (sealed) {
+            throw new IllegalStateException("Block state " + material + " is not in this palette");
+        }
+        return add(slot, intern(material, properties));
+    }
+
+    public int idFor(Entry entry) {
+        int slot = find(entry.hash, entry.material, entry.properties);
+        if (slots[slot] != null) return slotIds[slot];
+
+        return add(slot, INTERNED.computeIfAbsent(entry, key -> key));
+    }
+
+    // The slot holding this state, or the empty slot where it belongs
+    private int find(int hash, String material, Map<String, Object> properties) {
+        int mask = slots.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (slots[slot] != null && !slots[slot].matches(hash, material, properties)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    void seal() {
+        sealed = true;
+    }
+
+    private int add(int slot, Entry entry) {
+        if (sealed) {
+            throw new IllegalStateException("Block state " + entry.getMaterial() + " is not in this palette");
+        }
+
+        int id = entries.size();
+        entries.add(entry);
+        slots[slot] = entry;
+        slotIds[slot] = id;
+
+        if (entries.size() * 2 > slots.length) {
+            Entry[] oldSlots = slots;
+            int[] oldIds = slotIds;
+            slots = new Entry[oldSlots.length * 2];
+            slotIds = new int[oldSlots.length * 2];
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] == null) continue;
+                int moved = find(oldSlots[i].hash, oldSlots[i].material, oldSlots[i].properties);
+                slots[moved] = oldSlots[i];
+                slotIds[moved] = oldIds[i];
+            }
+        }
+        return id;
+    }
+
+    public Entry get(int id) {
+        return entries.get(id);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    static final class Entry {
+        private final String material;
+        private final Map<String, Object> properties;
+        private final int hash;
+
+        private boolean resolved;
+        private Material type;
+        private final org.bukkit.block.data.BlockData[] rotated = new org.bukkit.block.data.BlockData[4];
+
+        private Entry(String material, Map<String, Object> properties) {
+            this.material = material;
+            this.properties = properties == null || properties.isEmpty()
+                    ? null
+                    : Collections.unmodifiableMap(new LinkedHashMap<>(properties));
+            this.hash = hash(material, this.properties);
+        }
+
+        // Same value for any map with equal contents, so a caller's map can be probed before it is copied
+        static int hash(String material, Map<String, Object> properties) {
+            return 31 * (31 + Objects.hashCode(material)) + Objects.hashCode(properties);
+        }
+
+        boolean matches(int hash, String material, Map<String, Object> properties) {
+            return this.hash == hash && Objects.equals(this.material, material) && Objects.equals(this.properties, properties);
+        }
+
+        public String getMaterial() { return material; }
+        public Map<String, Object> getProperties() { return properties; }
+
+        // Null if the material does not exist on this server version
+        public synchronized Material getType() {
+            if (!resolved) {
+                try {
+                    type = Material.valueOf(material);
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    StructureLib.getPlugin().getLogger().warning("Skipping unknown material " + material);
+                }
+                resolved = true;
+            }
+            return type;
+        }
+
+        // Built on first use and shared by every placement; callers must not modify it
+        public synchronized org.bukkit.block.data.BlockData getBlockData(int rotation) {
+            int index = BlockStates.rotationIndex(rotation);
+            if (rotated[index] == null && getType() != null) {
+                rotated[index] = BlockStates.create(type, properties, index * 90);
+            }
+            return rotated[index];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry other)) return false;
+            return matches(other.hash, other.material, other.properties);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
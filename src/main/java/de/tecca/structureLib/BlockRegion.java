@@ -1,5 +1,7 @@
 package de.tecca.structureLib;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -11,19 +13,41 @@ public class BlockRegion {
     private Map<String, Object> properties;
     private List<BlockData> blocks;
 
+    // Set once a built structure holds the region; from then on it is read-only
+    private boolean frozen;
+
     public BlockRegion(String type) {
         this.type = type;
     }
 
     public String getType() { return type; }
-    public int[] getStart() { return start; }
-    public void setStart(int[] start) { this.start = start; }
-    public int[] getEnd() { return end; }
-    public void setEnd(int[] end) { this.end = end; }
+    public int[] getStart() { return frozen && start != null ? start.clone() : start; }
+    public void setStart(int[] start) { checkMutable(); this.start = start; }
+    public int[] getEnd() { return frozen && end != null ? end.clone() : end; }
+    public void setEnd(int[] end) { checkMutable(); this.end = end; }
     public String getMaterial() { return material; }
-    public void setMaterial(String material) { this.material = material; }
+    public void setMaterial(String material) { checkMutable(); this.material = material; }
     public Map<String, Object> getProperties() { return properties; }
-    public void setProperties(Map<String, Object> properties) { this.properties = properties; }
+    public void setProperties(Map<String, Object> properties) { checkMutable(); this.properties = properties; }
     public List<BlockData> getBlocks() { return blocks; }
-    public void setBlocks(List<BlockData> blocks) { this.blocks = blocks; }
+    public void setBlocks(List<BlockData> blocks) { checkMutable(); this.blocks = blocks; }
+
+    void freeze() {
+        if (frozen) return;
+        frozen = true;
+
+        // Copies, not views: whoever built the region may still hold the originals
+        properties = BlockEntity.readOnlyCopy(properties);
+        // Packed lists create a new BlockData on every access, so only plain lists need their blocks frozen
+        if (blocks != null && !(blocks instanceof PackedBlockList)) {
+            blocks = Collections.unmodifiableList(new ArrayList<>(blocks));
+            blocks.forEach(BlockData::freeze);
+        }
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("Region belongs to a built structure; change it through Structure.toBuilder()");
+        }
+    }
 }
@@ -0,0 +1,176 @@
+package de.tecca.structureLib;
+
+import org.bukkit.Axis;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.*;
+import org.bukkit.block.data.type.Gate;
+
+import java.util.Map;
+
+// Turns saved block properties into Bukkit block data for one of the four placement rotations
+final class BlockStates {
+    private BlockStates() {
+    }
+
+    static int rotationIndex(int rotation) {
+        switch (rotation) {
+            case 90:
+                return 1;
+            case 180:
+                return 2;
+            case 270:
+                return 3;
+            default:
+                return 0;
+        }
+    }
+
+    // Default state of the material with the saved properties applied, rotated clockwise by the given degrees
+    static org.bukkit.block.data.BlockData create(Material material, Map<String, Object> properties, int rotation) {
+        org.bukkit.block.data.BlockData data = Bukkit.createBlockData(material);
+        if (properties == null) return data;
+
+        try {
+            if (properties.containsKey("facing") && data instanceof Directional) {
+                BlockFace facing = BlockFace.valueOf((String) properties.get("facing"));
+                BlockFace rotatedFacing = rotateFacing(facing, rotation);
+                ((Directional) data).setFacing(rotatedFacing);
+            }
+
+            if (properties.containsKey("half") && data instanceof Bisected) {
+                Bisected.Half half = Bisected.Half.valueOf((String) properties.get("half"));
+                ((Bisected) data).setHalf(half);
+            }
+
+            if (properties.containsKey("open") && data instanceof Openable) {
+                ((Openable) data).setOpen((Boolean) properties.get("open"));
+            }
+
+            if (properties.containsKey("powered") && data instanceof Powerable) {
+                ((Powerable) data).setPowered((Boolean) properties.get("powered"));
+            }
+
+            if (properties.containsKey("waterlogged") && data instanceof Waterlogged) {
+                ((Waterlogged) data).setWaterlogged((Boolean) properties.get("waterlogged"));
+            }
+
+            if (properties.containsKey("axis") && data instanceof Orientable) {
+                String axis = (String) properties.get("axis");
+                if (axis != null) {
+                    Axis originalAxis = Axis.valueOf(axis);
+                    Axis rotatedAxis = rotateAxis(originalAxis, rotation);
+                    ((Orientable) data).setAxis(rotatedAxis);
+                }
+            }
+
+            if (properties.containsKey("faces") && data instanceof MultipleFacing multipleFacing) {
+                Map<String, Boolean> savedFaces = (Map<String, Boolean>) properties.get("faces");
+
+                for (BlockFace face : multipleFacing.getAllowedFaces()) {
+                    multipleFacing.setFace(face, false);
+                }
+
+                for (Map.Entry<String, Boolean> entry : savedFaces.entrySet()) {
+                    try {
+                        BlockFace originalFace = BlockFace.valueOf(entry.getKey());
+                        BlockFace rotatedFace = rotateFaceForConnection(originalFace, rotation);
+                        Boolean connected = entry.getValue();
+
+                        if (multipleFacing.getAllowedFaces().contains(rotatedFace)) {
+                            multipleFacing.setFace(rotatedFace, connected);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // Ignore
+                    }
+                }
+            }
+
+            if (properties.containsKey("in_wall") && data instanceof Gate) {
+                ((Gate) data).setInWall((Boolean) properties.get("in_wall"));
+            }
+
+            return data;
+
+        } catch (Exception e) {
+            StructureLib.getPlugin().getLogger().warning("Failed to apply properties to " + material + ": " + e.getMessage());
+            return Bukkit.createBlockData(material);
+        }
+    }
+
+    static BlockFace rotateFaceForConnection(BlockFace face, int rotation) {
+        switch (face) {
+            case NORTH:
+            case SOUTH:
+            case EAST:
+            case WEST:
+                return rotateFacing(face, rotation);
+            case UP:
+            case DOWN:
+            default:
+                return face;
+        }
+    }
+
+    static BlockFace rotateFacing(BlockFace facing, int rotation) {
+        switch (rotation) {
+            case 90:
+                switch (facing) {
+                    case NORTH:
+                        return BlockFace.EAST;
+                    case EAST:
+                        return BlockFace.SOUTH;
+                    case SOUTH:
+                        return BlockFace.WEST;
+                    case WEST:
+                        return BlockFace.NORTH;
+                    default:
+                        return facing;
+                }
+            case 180:
+                switch (facing) {
+                    case NORTH:
+                        return BlockFace.SOUTH;
+                    case EAST:
+                        return BlockFace.WEST;
+                    case SOUTH:
+                        return BlockFace.NORTH;
+                    case WEST:
+                        return BlockFace.EAST;
+                    default:
+                        return facing;
+                }
+            case 270:
+                switch (facing) {
+                    case NORTH:
+                        return BlockFace.WEST;
+                    case EAST:
+                        return BlockFace.NORTH;
+                    case SOUTH:
+                        return BlockFace.EAST;
+                    case WEST:
+                        return BlockFace.SOUTH;
+                    default:
+                        return facing;
+                }
+            default:
+                return facing;
+        }
+    }
+
+    static Axis rotateAxis(Axis axis, int rotation) {
+        if (rotation == 0 || rotation == 180) {
+            return axis;
+        }
+
+        switch (axis) {
+            case X:
+                return Axis.Z;
+            case Z:
+                return Axis.X;
+            default:
+                return axis;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package de.tecca.structureLib;
+
+// Called once per block with primitive coordinates, so iterating a structure allocates nothing per block
+@FunctionalInterface
+public interface BlockVisitor {
+    void visit(int x, int y, int z, int paletteId);
+}
@@ -7,17 +7,40 @@ import org.bukkit.World;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
 
 class EnhancedStructureCapture extends StructureCapture {
 
+    public EnhancedStructureCapture(StructureLayout layout) {
+        super(layout);
+    }
+
     @Override
     public Structure capture(Region region, World world, String id) {
         Structure structure = super.capture(region, world, id);
 
         StructureMetadata metadata = captureMetadata(region, world);
-        structure.setMetadata(metadata);
 
-        return structure;
+        return structure.toBuilder().setMetadata(metadata).build();
+    }
+
+    // Biome lookups need the main thread, so metadata is taken before the blocks are decomposed
+    @Override
+    public CompletableFuture<Structure> captureAsync(Region region, World world, String id, Executor worker,
+                                                     IntConsumer progress) {
+        StructureMetadata metadata = captureMetadata(region, world);
+
+        CompletableFuture<Structure> capture = super.captureAsync(region, world, id, worker, progress);
+        CompletableFuture<Structure> result = capture
+                .thenApply(structure -> structure.toBuilder().setMetadata(metadata).build());
+
+        // Cancelling the returned future has to reach the running job
+        result.whenComplete((structure, error) -> {
+            if (result.isCancelled()) capture.cancel(false);
+        });
+        return result;
     }
 
     private StructureMetadata captureMetadata(Region region, World world) {
@@ -6,7 +6,8 @@ import java.util.Map;
 public class EntityData {
     private final double[] pos;
     private final String type;
-    private final Map<String, Object> data;
+    private Map<String, Object> data;
+    private boolean frozen;
 
     public EntityData(double[] pos, String type) {
         this.pos = pos;
@@ -14,7 +15,15 @@ public class EntityData {
         this.data = new HashMap<>();
     }
 
-    public double[] getPos() { return pos; }
+    public double[] getPos() { return frozen && pos != null ? pos.clone() : pos; }
     public String getType() { return type; }
+
+    // Read-only once a built structure holds the entity
     public Map<String, Object> getData() { return data; }
+
+    void freeze() {
+        if (frozen) return;
+        frozen = true;
+        data = BlockEntity.readOnlyCopy(data);
+    }
 }
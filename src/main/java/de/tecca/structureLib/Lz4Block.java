@@ -0,0 +1,142 @@
+package de.tecca.structureLib;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Minimal LZ4 block format encoder/decoder (greedy matching, 64 KiB window)
+class Lz4Block {
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_LOG = 14;
+
+    private Lz4Block() {
+    }
+
+    public static byte[] compress(byte[] src) {
+        int length = src.length;
+        byte[] dst = new byte[length + length / 255 + 16];
+        int dp = 0;
+        int anchor = 0;
+
+        if (length > MATCH_FIND_LIMIT) {
+            int[] table = new int[1 << HASH_LOG];
+            Arrays.fill(table, -1);
+
+            int ip = 0;
+            int limit = length - MATCH_FIND_LIMIT;
+            int matchLimit = length - LAST_LITERALS;
+
+            while (ip < limit) {
+                int sequence = readInt(src, ip);
+                int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+                int ref = table[hash];
+                table[hash] = ip;
+
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    ip++;
+                    continue;
+                }
+
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+                    matchLength++;
+                }
+
+                dp = writeSequence(dst, dp, src, anchor, ip - anchor, ip - ref, matchLength);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+
+        dp = writeSequence(dst, dp, src, anchor, length - anchor, 0, 0);
+        return Arrays.copyOf(dst, dp);
+    }
+
+    public static byte[] decompress(ByteBuffer src, int length) throws IOException {
+        byte[] dst = new byte[length];
+        int dp = 0;
+
+        try {
+            while (dp < length) {
+                int token = src.get() & 0xFF;
+
+                int literals = readLength(src, token >>> 4);
+                if (literals > length - dp) {
+                    throw new IOException("Corrupt lz4 payload");
+                }
+                src.get(dst, dp, literals);
+                dp += literals;
+
+                if (dp == length) break;
+
+                int offset = (src.get() & 0xFF) | (src.get() & 0xFF) << 8;
+                int matchLength = readLength(src, token & 0x0F) + MIN_MATCH;
+                int ref = dp - offset;
+                if (offset == 0 || ref < 0 || matchLength > length - dp) {
+                    throw new IOException("Corrupt lz4 payload");
+                }
+
+                for (int i = 0; i < matchLength; i++) {
+                    dst[dp++] = dst[ref++];
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated lz4 payload", e);
+        }
+
+        return dst;
+    }
+
+    private static int writeSequence(byte[] dst, int dp, byte[] src, int literalStart, int literals, int offset, int matchLength) {
+        int token = Math.min(literals, 15) << 4;
+        if (matchLength > 0) {
+            token |= Math.min(matchLength - MIN_MATCH, 15);
+        }
+        dst[dp++] = (byte) token;
+        dp = writeLength(dst, dp, literals);
+
+        System.arraycopy(src, literalStart, dst, dp, literals);
+        dp += literals;
+
+        if (matchLength > 0) {
+            dst[dp++] = (byte) offset;
+            dst[dp++] = (byte) (offset >>> 8);
+            dp = writeLength(dst, dp, matchLength - MIN_MATCH);
+        }
+        return dp;
+    }
+
+    private static int writeLength(byte[] dst, int dp, int length) {
+        if (length < 15) return dp;
+
+        length -= 15;
+        while (length >= 255) {
+            dst[dp++] = (byte) 255;
+            length -= 255;
+        }
+        dst[dp++] = (byte) length;
+        return dp;
+    }
+
+    private static int readLength(ByteBuffer src, int length) {
+        if (length == 15) {
+            int next;
+            do {
+                next = src.get() & 0xFF;
+                length += next;
+            } while (next == 255);
+        }
+        return length;
+    }
+
+    private static int readInt(byte[] data, int index) {
+        return (data[index] & 0xFF)
+                | (data[index + 1] & 0xFF) << 8
+                | (data[index + 2] & 0xFF) << 16
+                | (data[index + 3] & 0xFF) << 24;
+    }
+}
@@ -1,5 +1,6 @@
 package de.tecca.structureLib;
 
+import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -10,8 +11,6 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.world.ChunkLoadEvent;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -59,22 +58,20 @@ class MetadataBasedSpawner implements Listener {
         activeSpawners.remove(structureId);
     }
 
-    public void loadAllActiveSpawners() {
-        File[] files = plugin.getStructuresFolder().listFiles((dir, name) -> name.endsWith(".json"));
-
-        if (files != null) {
-            for (File file : files) {
-                try {
-                    Structure structure = plugin.getStructureAPI().loadStructure(file);
-                    StructureMetadata metadata = structure.getMetadata();
+    public void updateStructure(String structureId, StructureMetadata metadata) {
+        if (metadata != null && metadata.isNaturalSpawning()) {
+            activeSpawners.put(structureId, metadata);
+        } else {
+            activeSpawners.remove(structureId);
+        }
+    }
 
-                    if (metadata != null && metadata.isNaturalSpawning()) {
-                        registerStructure(structure.getId(), metadata);
-                    }
+    public void loadAllActiveSpawners() {
+        for (StructureIndex.Entry entry : plugin.getStructureAPI().getIndex().getEntries()) {
+            StructureMetadata metadata = entry.getMetadata();
 
-                } catch (IOException e) {
-                    plugin.getLogger().warning("Failed to load structure for spawning: " + file.getName());
-                }
+            if (metadata != null && metadata.isNaturalSpawning()) {
+                registerStructure(entry.getId(), metadata);
             }
         }
     }
@@ -89,28 +86,36 @@ class MetadataBasedSpawner implements Listener {
             StructureMetadata metadata = entry.getValue();
 
             if (shouldSpawnInChunk(chunk, metadata)) {
-                Location spawnLoc = findBestLocationInChunk(chunk, structureId, metadata);
-                if (spawnLoc != null) {
-                    try {
-                        Structure structure = plugin.getStructureAPI().loadStructure(
-                                new File(plugin.getStructuresFolder(), structureId + ".json")
-                        );
-
-                        prepareTerrainForStructure(spawnLoc, structure, metadata);
-
-                        plugin.getStructureAPI().placeStructure(structure, spawnLoc);
+                // Candidates are scored from the indexed stats; the structure is only loaded, off the tick thread,
+                // once a spot is found
+                StructureIndex.Entry indexed = plugin.getStructureAPI().getIndex().get(structureId);
+                if (indexed == null || indexed.getSize() == null || indexed.getStats() == null) continue;
 
-                        plugin.getLogger().info("Naturally spawned structure '" + structureId + "' at " +
-                                spawnLoc.getBlockX() + ", " + spawnLoc.getBlockY() + ", " + spawnLoc.getBlockZ());
-
-                    } catch (IOException e) {
-                        plugin.getLogger().severe("Failed to place natural structure: " + e.getMessage());
-                    }
+                Location spawnLoc = findBestLocationInChunk(chunk, indexed.getSize(), indexed.getStats(), metadata);
+                if (spawnLoc != null) {
+                    plugin.getStructureAPI().getStructureAsync(structureId).whenComplete((structure, error) ->
+                            Bukkit.getScheduler().runTask(plugin, () -> {
+                                if (error != null) {
+                                    plugin.getLogger().warning("Failed to load structure for spawning: " + structureId
+                                            + " (" + StructureAPI.describeError(error) + ")");
+                                    return;
+                                }
+                                spawn(structureId, structure, metadata, spawnLoc);
+                            }));
                 }
             }
         }
     }
 
+    private void spawn(String structureId, Structure structure, StructureMetadata metadata, Location spawnLoc) {
+        prepareTerrainForStructure(spawnLoc, structure, metadata);
+
+        plugin.getStructureAPI().placeStructure(structure, spawnLoc);
+
+        plugin.getLogger().info("Naturally spawned structure '" + structureId + "' at " +
+                spawnLoc.getBlockX() + ", " + spawnLoc.getBlockY() + ", " + spawnLoc.getBlockZ());
+    }
+
     private boolean shouldSpawnInChunk(Chunk chunk, StructureMetadata metadata) {
         World world = chunk.getWorld();
         String dimension = getDimensionName(world);
@@ -135,45 +140,34 @@ class MetadataBasedSpawner implements Listener {
         return true;
     }
 
-    private Location findBestLocationInChunk(Chunk chunk, String structureId, StructureMetadata metadata) {
-        try {
-            Structure structure = plugin.getStructureAPI().loadStructure(
-                    new File(plugin.getStructuresFolder(), structureId + ".json")
-            );
-
-            int[] size = structure.getSize();
-            World world = chunk.getWorld();
+    private Location findBestLocationInChunk(Chunk chunk, int[] size, StructureStats stats, StructureMetadata metadata) {
+        World world = chunk.getWorld();
 
-            List<TerrainCandidate> candidates = new ArrayList<>();
+        List<TerrainCandidate> candidates = new ArrayList<>();
 
-            for (int attempts = 0; attempts < 20; attempts++) {
-                int x = chunk.getX() * 16 + ThreadLocalRandom.current().nextInt(Math.max(1, 16 - size[0]));
-                int z = chunk.getZ() * 16 + ThreadLocalRandom.current().nextInt(Math.max(1, 16 - size[2]));
+        for (int attempts = 0; attempts < 20; attempts++) {
+            int x = chunk.getX() * 16 + ThreadLocalRandom.current().nextInt(Math.max(1, 16 - size[0]));
+            int z = chunk.getZ() * 16 + ThreadLocalRandom.current().nextInt(Math.max(1, 16 - size[2]));
 
-                Location surface = findSurface(world, x, z);
-                if (surface != null) {
-                    TerrainCandidate candidate = evaluateTerrainSuitability(surface, structure, metadata);
-                    if (candidate.score > 40) {
-                        candidates.add(candidate);
-                    }
+            Location surface = findSurface(world, x, z);
+            if (surface != null) {
+                TerrainCandidate candidate = evaluateTerrainSuitability(surface, stats, metadata);
+                if (candidate.score > 40) {
+                    candidates.add(candidate);
                 }
             }
+        }
 
-            if (!candidates.isEmpty()) {
-                candidates.sort((a, b) -> Float.compare(b.score, a.score));
-                return candidates.get(0).location;
-            }
-
-        } catch (IOException e) {
-            plugin.getLogger().warning("Failed to load structure for location finding: " + structureId);
+        if (!candidates.isEmpty()) {
+            candidates.sort((a, b) -> Float.compare(b.score, a.score));
+            return candidates.get(0).location;
         }
 
         return null;
     }
 
-    private TerrainCandidate evaluateTerrainSuitability(Location location, Structure structure, StructureMetadata metadata) {
+    private TerrainCandidate evaluateTerrainSuitability(Location location, StructureStats stats, StructureMetadata metadata) {
         TerrainCandidate candidate = new TerrainCandidate(location);
-        int[] size = structure.getSize();
         World world = location.getWorld();
 
         if (!metadata.getSpawnHeightRange().contains(location.getBlockY())) {
@@ -182,25 +176,25 @@ class MetadataBasedSpawner implements Listener {
         }
 
         List<Integer> heights = new ArrayList<>();
-        int waterBlocks = 0;
-        int lavaBlocks = 0;
-        int treeBlocks = 0;
+        int[] found = new int[3];
 
-        for (int x = 0; x < size[0]; x++) {
-            for (int z = 0; z < size[2]; z++) {
-                Location checkLoc = location.clone().add(x, 0, z);
-                Location surface = findSurface(world, checkLoc.getBlockX(), checkLoc.getBlockZ());
+        // Only the columns the structure actually stands on matter for its footing
+        stats.forEachColumn((x, z, lowestY) -> {
+            Location surface = findSurface(world, location.getBlockX() + x, location.getBlockZ() + z);
 
-                if (surface != null) {
-                    heights.add(surface.getBlockY());
+            if (surface != null) {
+                heights.add(surface.getBlockY());
 
-                    Block block = surface.getBlock();
-                    if (block.getType().toString().contains("WATER")) waterBlocks++;
-                    if (block.getType().toString().contains("LAVA")) lavaBlocks++;
-                    if (isTreeBlock(block.getType())) treeBlocks++;
-                }
+                Block block = surface.getBlock();
+                if (block.getType().toString().contains("WATER")) found[0]++;
+                if (block.getType().toString().contains("LAVA")) found[1]++;
+                if (isTreeBlock(block.getType())) found[2]++;
             }
-        }
+        });
+
+        int waterBlocks = found[0];
+        int lavaBlocks = found[1];
+        int treeBlocks = found[2];
 
         if (heights.isEmpty()) {
             candidate.score = 0;
@@ -261,21 +255,36 @@ class MetadataBasedSpawner implements Listener {
 
     private void prepareTerrainForStructure(Location location, Structure structure, StructureMetadata metadata) {
         int[] size = structure.getSize();
+        StructureStats stats = structure.getStats();
         World world = location.getWorld();
 
-        removeTreesInArea(location, size, world);
+        removeTreesInArea(location, size, stats, world);
 
         if (metadata.getSpawnConditions().isRequiresFlatGround()) {
-            adaptTerrainForStructure(location, size, world);
+            adaptTerrainForStructure(location, size, stats, world);
         }
     }
 
-    private void removeTreesInArea(Location location, int[] size, World world) {
+    private void removeTreesInArea(Location location, int[] size, StructureStats stats, World world) {
         Set<Location> processedTrees = new HashSet<>();
         int bufferZone = 2;
 
-        for (int x = -bufferZone; x < size[0] + bufferZone; x++) {
-            for (int z = -bufferZone; z < size[2] + bufferZone; z++) {
+        // The footprint grown by the buffer zone, so open parts of the bounding box are left alone
+        int width = stats.getFootprintX() + bufferZone * 2;
+        int depth = stats.getFootprintZ() + bufferZone * 2;
+        boolean[] near = new boolean[width * depth];
+        stats.forEachColumn((columnX, columnZ, lowestY) -> {
+            for (int dz = 0; dz <= bufferZone * 2; dz++) {
+                for (int dx = 0; dx <= bufferZone * 2; dx++) {
+                    near[(columnZ + dz) * width + columnX + dx] = true;
+                }
+            }
+        });
+
+        for (int x = -bufferZone; x < width - bufferZone; x++) {
+            for (int z = -bufferZone; z < depth - bufferZone; z++) {
+                if (!near[(z + bufferZone) * width + x + bufferZone]) continue;
+
                 for (int y = -5; y < size[1] + 15; y++) {
                     Location checkLoc = location.clone().add(x, y, z);
                     Block block = world.getBlockAt(checkLoc);
@@ -395,7 +404,7 @@ class MetadataBasedSpawner implements Listener {
         return false;
     }
 
-    private void adaptTerrainForStructure(Location location, int[] size, World world) {
+    private void adaptTerrainForStructure(Location location, int[] size, StructureStats stats, World world) {
         List<Integer> sampleHeights = new ArrayList<>();
         List<Location> samplePoints = getSamplePoints(location, size, world);
 
@@ -412,7 +421,7 @@ class MetadataBasedSpawner implements Listener {
 
         int targetHeight = (int) sampleHeights.stream().mapToInt(Integer::intValue).average().orElse(location.getBlockY());
 
-        applyLayeredTerraforming(location, size, world, targetHeight);
+        applyLayeredTerraforming(location, stats, world, targetHeight);
 
         createBlendingZones(location, size, world, targetHeight);
 
@@ -437,31 +446,30 @@ class MetadataBasedSpawner implements Listener {
         return points;
     }
 
-    private void applyLayeredTerraforming(Location location, int[] size, World world, int targetHeight) {
-        for (int x = 0; x < size[0]; x++) {
-            for (int z = 0; z < size[2]; z++) {
-                Location groundLoc = location.clone().add(x, 0, z);
-                Location surface = findSurface(world, groundLoc.getBlockX(), groundLoc.getBlockZ());
+    private void applyLayeredTerraforming(Location location, StructureStats stats, World world, int targetHeight) {
+        int baseY = stats.getMin()[1];
+        stats.forEachColumn((x, z, lowestY) -> {
+            Location surface = findSurface(world, location.getBlockX() + x, location.getBlockZ() + z);
+            if (surface == null) return;
 
-                if (surface != null) {
-                    int currentHeight = surface.getBlockY();
+            int currentHeight = surface.getBlockY();
 
-                    int variation = 0;
-                    if ((x + z) % 3 == 0 && ThreadLocalRandom.current().nextBoolean()) {
-                        variation = ThreadLocalRandom.current().nextBoolean() ? 1 : -1;
-                    }
-                    int adjustedTarget = targetHeight + variation;
+            int variation = 0;
+            if ((x + z) % 3 == 0 && ThreadLocalRandom.current().nextBoolean()) {
+                variation = ThreadLocalRandom.current().nextBoolean() ? 1 : -1;
+            }
+            // Columns that start above the structure's base only need room underneath, not fill
+            int aboveBase = lowestY - baseY;
+            int adjustedTarget = targetHeight + variation + aboveBase;
 
-                    int heightDiff = adjustedTarget - currentHeight;
+            int heightDiff = adjustedTarget - currentHeight;
 
-                    if (heightDiff > 0) {
-                        buildUpWithLayers(world, surface, heightDiff);
-                    } else if (heightDiff < 0) {
-                        digDownNaturally(world, surface, Math.abs(heightDiff));
-                    }
-                }
+            if (heightDiff > 0 && aboveBase == 0) {
+                buildUpWithLayers(world, surface, heightDiff);
+            } else if (heightDiff < 0) {
+                digDownNaturally(world, surface, Math.abs(heightDiff));
             }
-        }
+        });
     }
 
     private void buildUpWithLayers(World world, Location surface, int heightDiff) {
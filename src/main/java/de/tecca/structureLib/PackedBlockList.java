@@ -0,0 +1,52 @@
+package de.tecca.structureLib;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+// Individual blocks kept as packed positions and palette indices; BlockData objects are only created on access
+class PackedBlockList extends AbstractList<BlockData> implements RandomAccess {
+    private final long[] positions;
+    private final int[] paletteIds;
+    private final BlockPalette.Entry[] palette;
+
+    PackedBlockList(long[] positions, int[] paletteIds, BlockPalette.Entry[] palette) {
+        this.positions = positions;
+        this.paletteIds = paletteIds;
+        this.palette = palette;
+    }
+
+    @Override
+    public BlockData get(int index) {
+        long position = positions[index];
+        BlockPalette.Entry entry = palette[paletteIds[index]];
+
+        BlockData block = new BlockData(new int[]{
+                StructureVolume.unpackX(position),
+                StructureVolume.unpackY(position),
+                StructureVolume.unpackZ(position)
+        }, entry.getMaterial());
+        block.setProperties(entry.getProperties());
+        return block;
+    }
+
+    @Override
+    public int size() {
+        return positions.length;
+    }
+
+    // Visits the blocks without creating BlockData objects, with ids from the given palette; null only resolves the ids
+    void forEach(BlockPalette target, BlockVisitor visitor) {
+        for (int i = 0; i < positions.length; i++) {
+            int id = target.idFor(palette[paletteIds[i]]);
+            if (visitor == null) continue;
+
+            long position = positions[i];
+            visitor.visit(StructureVolume.unpackX(position), StructureVolume.unpackY(position),
+                    StructureVolume.unpackZ(position), id);
+        }
+    }
+
+    long retainedBytes() {
+        return 32 + positions.length * 12L;
+    }
+}
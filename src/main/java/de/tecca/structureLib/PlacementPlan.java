@@ -0,0 +1,153 @@
+package de.tecca.structureLib;
+
+import org.bukkit.Material;
+
+import java.util.Arrays;
+import java.util.Set;
+
+// A structure compiled for one rotation: rotated offsets and final block data in placement order
+class PlacementPlan {
+    private static final int PHASE_REGULAR = 0;
+    private static final int PHASE_SPECIAL = 1;
+    private static final int PHASE_COMPLEX = 2;
+    private static final int PHASES = 3;
+
+    private static final Set<Material> PHYSICS_SENSITIVE = Set.of(
+            Material.SAND, Material.GRAVEL, Material.ANVIL, Material.SCAFFOLDING,
+            Material.RED_SAND, Material.POINTED_DRIPSTONE, Material.POWDER_SNOW
+    );
+
+    private final int rotation;
+    private final int[] offsets;
+    private final org.bukkit.block.data.BlockData[] states;
+    private final int[] connecting;
+
+    private PlacementPlan(int rotation, int[] offsets, org.bukkit.block.data.BlockData[] states, int[] connecting) {
+        this.rotation = rotation;
+        this.offsets = offsets;
+        this.states = states;
+        this.connecting = connecting;
+    }
+
+    public int getRotation() { return rotation; }
+
+    // x, y, z per block, already rotated around the placement origin
+    public int[] getOffsets() { return offsets; }
+
+    // Shared with the palette entries; callers must not modify them
+    public org.bukkit.block.data.BlockData[] getStates() { return states; }
+
+    // Indices of blocks whose faces are recomputed once everything is placed
+    public int[] getConnecting() { return connecting; }
+
+    public int size() { return states.length; }
+
+    long retainedBytes() {
+        return 64 + offsets.length * 4L + states.length * 8L + connecting.length * 4L;
+    }
+
+    public static PlacementPlan compile(Structure structure, int rotation) {
+        rotation = BlockStates.rotationIndex(rotation) * 90;
+
+        // Only needed while compiling; the cached plan keeps just its own arrays
+        StructureVolume volume = structure.buildVolume();
+        BlockPalette palette = volume.getPalette();
+
+        // Classify each palette entry once instead of every block
+        int[] phases = new int[palette.size()];
+        boolean[] connects = new boolean[palette.size()];
+        org.bukkit.block.data.BlockData[] entryStates = new org.bukkit.block.data.BlockData[palette.size()];
+        for (int id = 0; id < phases.length; id++) {
+            BlockPalette.Entry entry = palette.get(id);
+            Material material = entry.getType();
+            if (material == null) {
+                phases[id] = -1;
+                continue;
+            }
+            entryStates[id] = entry.getBlockData(rotation);
+            if (isComplexBlock(material)) {
+                phases[id] = PHASE_COMPLEX;
+            } else if (PHYSICS_SENSITIVE.contains(material)) {
+                phases[id] = PHASE_SPECIAL;
+            } else {
+                phases[id] = PHASE_REGULAR;
+            }
+            connects[id] = isMultipleFacingMaterial(material);
+        }
+
+        // Counting sort by phase: one pass for the sizes, one to fill
+        int[] next = new int[PHASES + 1];
+        volume.forEach((x, y, z, id) -> {
+            if (phases[id] >= 0) next[phases[id] + 1]++;
+        });
+        for (int phase = 1; phase <= PHASES; phase++) {
+            next[phase] += next[phase - 1];
+        }
+
+        int total = next[PHASES];
+        int[] offsets = new int[total * 3];
+        org.bukkit.block.data.BlockData[] states = new org.bukkit.block.data.BlockData[total];
+        int[][] connecting = {new int[16]};
+        int[] connectingCount = new int[1];
+
+        volume.forEach((x, y, z, id) -> {
+            if (phases[id] < 0) return;
+
+            int i = next[phases[id]]++;
+            offsets[i * 3] = x;
+            offsets[i * 3 + 1] = y;
+            offsets[i * 3 + 2] = z;
+            states[i] = entryStates[id];
+
+            if (connects[id]) {
+                if (connectingCount[0] == connecting[0].length) {
+                    connecting[0] = Arrays.copyOf(connecting[0], connectingCount[0] * 2);
+                }
+                connecting[0][connectingCount[0]++] = i;
+            }
+        }, rotation, 0, 0, 0);
+
+        return new PlacementPlan(rotation, offsets, states, Arrays.copyOf(connecting[0], connectingCount[0]));
+    }
+
+    private static boolean isComplexBlock(Material material) {
+        return isDoorMaterial(material) || isMultiBlock(material);
+    }
+
+    private static boolean isDoorMaterial(Material material) {
+        return material.toString().contains("DOOR") && !material.toString().contains("TRAPDOOR");
+    }
+
+    private static boolean isMultiBlock(Material material) {
+        return material.toString().contains("BED") ||
+                material.toString().contains("DOOR") ||
+                material == Material.TALL_GRASS ||
+                material == Material.LARGE_FERN ||
+                material == Material.SUNFLOWER ||
+                material == Material.LILAC ||
+                material == Material.ROSE_BUSH ||
+                material == Material.PEONY;
+    }
+
+    private static boolean isMultipleFacingMaterial(Material material) {
+        String name = material.toString();
+
+        if (name.contains("_PANE")) return true;
+
+        if (name.contains("_FENCE") && !name.contains("_GATE")) return true;
+
+        switch (material) {
+            case IRON_BARS:           // MultipleFacing
+            case FIRE:                // Fire interface
+            case SOUL_FIRE:           // Fire interface
+            case TRIPWIRE:            // Tripwire interface
+            case GLOW_LICHEN:         // GlowLichen interface
+            case SCULK_VEIN:          // SculkVein interface
+            case VINE:                // MultipleFacing
+            case CHORUS_PLANT:        // MultipleFacing
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package de.tecca.structureLib;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// Splits a captured volume into as few regions as it can; cells only merge when their full block state matches
+class RegionDecomposer {
+    private static final int MIN_REGION_BLOCKS = 4;
+    private static final int[][] AXIS_ORDERS = {
+            {0, 2, 1}, {2, 0, 1}, {0, 1, 2}, {2, 1, 0}, {1, 0, 2}, {1, 2, 0}
+    };
+
+    private final StructureVolume volume;
+    private final int[] size;
+    private final ProcessedCells processed;
+    private final List<BlockRegion> regions = new ArrayList<>();
+    private final int[] typeCounts = new int[5];
+    private final BlockPalette.Entry[] entries;
+
+    // Leftover blocks of the current chunk section, emitted together as one individual region
+    private long pendingSection;
+    private long[] pendingPositions = new long[64];
+    private int[] pendingIds = new int[64];
+    private int pendingCount;
+    private int individualBlocks;
+
+    RegionDecomposer(StructureVolume volume) {
+        this.volume = volume;
+        this.size = new int[] {volume.getSizeX(), volume.getSizeY(), volume.getSizeZ()};
+        this.processed = new ProcessedCells(size[0], size[1], size[2]);
+        this.entries = volume.getPalette().getEntries().toArray(new BlockPalette.Entry[0]);
+    }
+
+    // Cells come in section order, so each section's leftovers are complete once the next section starts
+    public List<BlockRegion> decompose() {
+        volume.forEach((x, y, z, paletteId) -> {
+            if (processed.contains(x, y, z)) return;
+
+            BlockRegion region = regionAt(x, y, z, paletteId);
+            if (region != null) {
+                regions.add(region);
+            } else {
+                addIndividual(x, y, z, paletteId);
+            }
+        });
+        flushIndividuals();
+        return regions;
+    }
+
+    // Region counts by type and the encoded size next to one region per block, as the old capture wrote them.
+    // Walks the volume and encodes every region again, so it is meant for debug logging only.
+    public String report() {
+        long blocks = volume.getBlockCount();
+        long[] bytes = {0, 0};
+
+        volume.forEach((x, y, z, paletteId) ->
+                bytes[0] += 2 + varIntSize(StructureBinaryFormat.zigZag(x))
+                        + varIntSize(StructureBinaryFormat.zigZag(y)) + varIntSize(StructureBinaryFormat.zigZag(z)) + varIntSize(paletteId));
+
+        try {
+            DataOutputStream out = new DataOutputStream(OutputStream.nullOutputStream());
+            for (BlockRegion region : regions) {
+                StructureBinaryFormat.writeRegion(out, region, volume.getPalette());
+            }
+            bytes[1] = out.size();
+        } catch (IOException e) {
+            bytes[1] = -1;
+        }
+
+        return blocks + " blocks: " + blocks + " regions / " + bytes[0] + " bytes before, "
+                + regions.size() + " regions / " + bytes[1] + " bytes after ("
+                + typeCounts[0] + " fill, " + typeCounts[1] + " hollow, " + typeCounts[2] + " plane, "
+                + typeCounts[3] + " line, " + individualBlocks + " individual blocks in " + typeCounts[4] + " regions)";
+    }
+
+    private BlockRegion regionAt(int x, int y, int z, int paletteId) {
+        int[] start = {x, y, z};
+
+        int[] best = null;
+        long bestVolume = 0;
+        for (int[] order : AXIS_ORDERS) {
+            int[] end = growBox(start, paletteId, order);
+            long boxVolume = volumeOf(start, end);
+            if (boxVolume > bestVolume) {
+                best = end;
+                bestVolume = boxVolume;
+            }
+        }
+
+        int[] hollowEnd = findHollowBox(start, paletteId);
+        if (hollowEnd != null && shellSize(start, hollowEnd) > bestVolume) {
+            processed.addBox(start, hollowEnd, true);
+            return boxRegion("hollow", 1, start, hollowEnd, paletteId);
+        }
+
+        if (bestVolume < MIN_REGION_BLOCKS) {
+            processed.add(x, y, z);
+            return null;
+        }
+
+        processed.addBox(start, best, false);
+
+        int flatAxes = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            if (best[axis] == start[axis]) flatAxes++;
+        }
+        if (flatAxes == 2) return boxRegion("line", 3, start, best, paletteId);
+        if (flatAxes == 1) return boxRegion("plane", 2, start, best, paletteId);
+        return boxRegion("fill", 0, start, best, paletteId);
+    }
+
+    // Grows one axis at a time as far as the whole next slab matches, in the given axis order
+    private int[] growBox(int[] start, int paletteId, int[] order) {
+        int[] end = start.clone();
+        for (int axis : order) {
+            while (end[axis] + 1 < size[axis] && slabMatches(start, end, axis, end[axis] + 1, paletteId)) {
+                end[axis]++;
+            }
+        }
+        return end;
+    }
+
+    private boolean slabMatches(int[] start, int[] end, int axis, int at, int paletteId) {
+        int[] from = start.clone();
+        int[] to = end.clone();
+        from[axis] = at;
+        to[axis] = at;
+        return boxMatches(from, to, paletteId, false);
+    }
+
+    // The largest box whose edges run along the start cell's own rows, if its whole shell is one block state
+    private int[] findHollowBox(int[] start, int paletteId) {
+        int[] end = new int[3];
+        for (int axis = 0; axis < 3; axis++) {
+            int[] cell = start.clone();
+            while (cell[axis] + 1 < size[axis]) {
+                cell[axis]++;
+                if (!matches(cell[0], cell[1], cell[2], paletteId)) {
+                    cell[axis]--;
+                    break;
+                }
+            }
+            if (cell[axis] - start[axis] < 2) return null;
+            end[axis] = cell[axis];
+        }
+
+        return boxMatches(start, end, paletteId, true) ? end : null;
+    }
+
+    private boolean boxMatches(int[] from, int[] to, int paletteId, boolean shellOnly) {
+        for (int y = from[1]; y <= to[1]; y++) {
+            for (int z = from[2]; z <= to[2]; z++) {
+                boolean shellRow = !shellOnly || y == from[1] || y == to[1] || z == from[2] || z == to[2];
+                if (shellRow) {
+                    for (int x = from[0]; x <= to[0]; x++) {
+                        if (!matches(x, y, z, paletteId)) return false;
+                    }
+                } else if (!matches(from[0], y, z, paletteId) || !matches(to[0], y, z, paletteId)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(int x, int y, int z, int paletteId) {
+        return !processed.contains(x, y, z) && volume.get(x, y, z) == paletteId;
+    }
+
+    private BlockRegion boxRegion(String type, int typeIndex, int[] start, int[] end, int paletteId) {
+        typeCounts[typeIndex]++;
+        BlockPalette.Entry entry = volume.getPalette().get(paletteId);
+
+        BlockRegion region = new BlockRegion(type);
+        region.setStart(start);
+        region.setEnd(end);
+        region.setMaterial(entry.getMaterial());
+        region.setProperties(entry.getProperties());
+        return region;
+    }
+
+    private void addIndividual(int x, int y, int z, int paletteId) {
+        long section = StructureVolume.pack(x & ~15, y & ~15, z & ~15);
+        if (pendingCount > 0 && section != pendingSection) {
+            flushIndividuals();
+        }
+        pendingSection = section;
+
+        if (pendingCount == pendingPositions.length) {
+            pendingPositions = Arrays.copyOf(pendingPositions, pendingCount * 2);
+            pendingIds = Arrays.copyOf(pendingIds, pendingCount * 2);
+        }
+        pendingPositions[pendingCount] = StructureVolume.pack(x, y, z);
+        pendingIds[pendingCount] = paletteId;
+        pendingCount++;
+    }
+
+    private void flushIndividuals() {
+        if (pendingCount == 0) return;
+
+        BlockRegion individual = new BlockRegion("individual");
+        individual.setBlocks(new PackedBlockList(
+                Arrays.copyOf(pendingPositions, pendingCount), Arrays.copyOf(pendingIds, pendingCount), entries));
+        regions.add(individual);
+
+        typeCounts[4]++;
+        individualBlocks += pendingCount;
+        pendingCount = 0;
+    }
+
+    private static long volumeOf(int[] start, int[] end) {
+        return (long) (end[0] - start[0] + 1) * (end[1] - start[1] + 1) * (end[2] - start[2] + 1);
+    }
+
+    private static long shellSize(int[] start, int[] end) {
+        long dx = end[0] - start[0] + 1;
+        long dy = end[1] - start[1] + 1;
+        long dz = end[2] - start[2] + 1;
+        return dx * dy * dz - (dx - 2) * (dy - 2) * (dz - 2);
+    }
+
+    private static int varIntSize(int value) {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    // One bit per cell of the structure's bounding box instead of a boxed position per processed block
+    private static class ProcessedCells {
+        private final int sizeX;
+        private final int sizeZ;
+        private final BitSet bits;
+
+        ProcessedCells(int sizeX, int sizeY, int sizeZ) {
+            // Any index below the cell count stays in int range once the count does
+            long cellCount = (long) sizeX * sizeY * sizeZ;
+            if (cellCount > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Volume too large to decompose: " + cellCount + " cells");
+            }
+
+            this.sizeX = sizeX;
+            this.sizeZ = sizeZ;
+            this.bits = new BitSet((int) cellCount);
+        }
+
+        boolean contains(int x, int y, int z) {
+            return bits.get(index(x, y, z));
+        }
+
+        void add(int x, int y, int z) {
+            bits.set(index(x, y, z));
+        }
+
+        // Rows along x are set as bit ranges; for hollow boxes only the shell is marked
+        void addBox(int[] start, int[] end, boolean hollow) {
+            for (int y = start[1]; y <= end[1]; y++) {
+                for (int z = start[2]; z <= end[2]; z++) {
+                    boolean shellRow = !hollow || y == start[1] || y == end[1] || z == start[2] || z == end[2];
+                    if (shellRow) {
+                        bits.set(index(start[0], y, z), index(end[0], y, z) + 1);
+                    } else {
+                        bits.set(index(start[0], y, z));
+                        bits.set(index(end[0], y, z));
+                    }
+                }
+            }
+        }
+
+        private int index(int x, int y, int z) {
+            return (y * sizeZ + z) * sizeX + x;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package de.tecca.structureLib;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+// A 16x16x16 part of a structure with its own small palette and bit-packed indices, laid out like a chunk section
+class SectionRegion extends BlockRegion {
+    public static final String TYPE = "section";
+    public static final int SIZE = 16;
+    public static final int CELLS = SIZE * SIZE * SIZE;
+
+    private final BlockPalette.Entry[] palette;
+    private final int bits;
+    private final long[] data;
+    private int[] occupied;
+
+    // Packed values are local palette index + 1, with 0 for cells the structure does not touch
+    SectionRegion(int[] start, int[] end, BlockPalette.Entry[] palette, int bits, long[] data) {
+        super(TYPE);
+        setStart(start);
+        setEnd(end);
+        this.palette = palette;
+        this.bits = bits;
+        this.data = data;
+    }
+
+    public BlockPalette.Entry[] getPalette() { return palette; }
+    public int getBits() { return bits; }
+    public long[] getData() { return data; }
+
+    public static int bitsFor(int paletteSize) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(paletteSize));
+    }
+
+    public static int wordsFor(int bits) {
+        int perWord = 64 / bits;
+        return (CELLS + perWord - 1) / perWord;
+    }
+
+    // Local palette index at a cell index, or -1 if empty
+    public int get(int index) {
+        int perWord = 64 / bits;
+        long word = data[index / perWord];
+        int shift = (index % perWord) * bits;
+        return (int) ((word >>> shift) & ((1L << bits) - 1)) - 1;
+    }
+
+    // Visits occupied cells with structure-relative coordinates and local palette indices
+    public void forEach(BlockVisitor visitor) {
+        int[] start = getStart();
+        for (int index : occupied()) {
+            visitor.visit(start[0] + (index & 15), start[1] + (index >> 8), start[2] + ((index >> 4) & 15), get(index));
+        }
+    }
+
+    public int getBlockCount() {
+        return occupied().length;
+    }
+
+    @Override
+    public List<BlockData> getBlocks() {
+        return new BlockView();
+    }
+
+    long retainedBytes() {
+        return 96 + data.length * 8L + palette.length * 8L;
+    }
+
+    private synchronized int[] occupied() {
+        if (occupied == null) {
+            int count = 0;
+            int[] indices = new int[CELLS];
+            for (int index = 0; index < CELLS; index++) {
+                if (get(index) >= 0) {
+                    indices[count++] = index;
+                }
+            }
+            occupied = Arrays.copyOf(indices, count);
+        }
+        return occupied;
+    }
+
+    private class BlockView extends AbstractList<BlockData> implements RandomAccess {
+        private final int[] indices = occupied();
+
+        @Override
+        public BlockData get(int i) {
+            int index = indices[i];
+            int[] start = getStart();
+            BlockPalette.Entry entry = palette[SectionRegion.this.get(index)];
+
+            BlockData block = new BlockData(new int[]{
+                    start[0] + (index & 15),
+                    start[1] + (index >> 8),
+                    start[2] + ((index >> 4) & 15)
+            }, entry.getMaterial());
+            block.setProperties(entry.getProperties());
+            return block;
+        }
+
+        @Override
+        public int size() {
+            return indices.length;
+        }
+    }
+
+    static class Builder {
+        private final int originX;
+        private final int originY;
+        private final int originZ;
+        private final int[] values = new int[CELLS];
+        private final List<BlockPalette.Entry> entries = new ArrayList<>();
+        private final Map<BlockPalette.Entry, Integer> ids = new HashMap<>();
+
+        Builder(int originX, int originY, int originZ) {
+            this.originX = originX;
+            this.originY = originY;
+            this.originZ = originZ;
+        }
+
+        boolean contains(int x, int y, int z) {
+            return x >= originX && x < originX + SIZE
+                    && y >= originY && y < originY + SIZE
+                    && z >= originZ && z < originZ + SIZE;
+        }
+
+        void set(int x, int y, int z, BlockPalette.Entry entry) {
+            Integer id = ids.get(entry);
+            if (id == null) {
+                id = entries.size();
+                entries.add(entry);
+                ids.put(entry, id);
+            }
+            values[((y - originY) << 8) | ((z - originZ) << 4) | (x - originX)] = id + 1;
+        }
+
+        // The end is clipped to the structure size, so sections never grow its bounding box
+        SectionRegion build(int sizeX, int sizeY, int sizeZ) {
+            int bits = bitsFor(entries.size());
+            int perWord = 64 / bits;
+            long[] data = new long[wordsFor(bits)];
+            for (int index = 0; index < CELLS; index++) {
+                data[index / perWord] |= (long) values[index] << ((index % perWord) * bits);
+            }
+
+            int[] start = {originX, originY, originZ};
+            int[] end = {
+                    Math.min(originX + SIZE, Math.max(sizeX, originX + 1)) - 1,
+                    Math.min(originY + SIZE, Math.max(sizeY, originY + 1)) - 1,
+                    Math.min(originZ + SIZE, Math.max(sizeZ, originZ + 1)) - 1
+            };
+            return new SectionRegion(start, end, entries.toArray(new BlockPalette.Entry[0]), bits, data);
+        }
+    }
+}
@@ -1,72 +1,209 @@
 package de.tecca.structureLib;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
-public class Structure {
-    private String id;
-    private String author;
-    private long created;
-    private int[] size;
+// Immutable once built, so one decoded instance can be shared by the cache, the spawner and placements
+public final class Structure {
+    private final String id;
+    private final String author;
+    private final long created;
+    private final int[] size;
     private final List<BlockRegion> regions;
     private final List<BlockEntity> blockEntities;
     private final List<EntityData> entities;
+    private final StructureMetadata metadata;
 
-    private StructureMetadata metadata;
+    private volatile StructureVolume volume;
+    private volatile BlockPalette palette;
+    private volatile StructureStats stats;
 
-    public Structure() {
-        this.regions = new ArrayList<>();
-        this.blockEntities = new ArrayList<>();
-        this.entities = new ArrayList<>();
+    private Structure(Builder builder) {
+        this.id = builder.id;
+        this.author = builder.author;
+        this.created = builder.created;
+        this.size = builder.size != null ? builder.size.clone() : null;
+        // Lazily decoded lists are read-only already and stay unwrapped, so the registry can see what they retain
+        this.regions = StructureBinaryFormat.lazyRetainedBytes(builder.regions) >= 0
+                ? builder.regions
+                : Collections.unmodifiableList(builder.regions);
+
+        // Everything reachable through the getters becomes read-only; lazy lists decode new regions on every access
+        if (this.regions != builder.regions) {
+            builder.regions.forEach(BlockRegion::freeze);
+        }
+        builder.blockEntities.forEach(BlockEntity::freeze);
+        builder.entities.forEach(EntityData::freeze);
+        this.blockEntities = Collections.unmodifiableList(builder.blockEntities);
+        this.entities = Collections.unmodifiableList(builder.entities);
+        this.metadata = builder.metadata != null ? builder.metadata.copy() : null;
+        this.volume = builder.volume;
+        this.stats = builder.stats;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Starts from this structure's values; its lists are only copied once the builder changes them
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.id = id;
+        builder.author = author;
+        builder.created = created;
+        builder.size = size;
+        builder.regions = regions;
+        builder.blockEntities = blockEntities;
+        builder.entities = entities;
+        builder.metadata = metadata;
+        builder.volume = volume;
+        builder.stats = stats;
+        builder.shared = true;
+        return builder;
     }
 
     public String getId() { return id; }
-    public void setId(String id) { this.id = id; }
     public String getAuthor() { return author; }
-    public void setAuthor(String author) { this.author = author; }
     public long getCreated() { return created; }
-    public void setCreated(long created) { this.created = created; }
-    public int[] getSize() { return size; }
-    public void setSize(int[] size) { this.size = size; }
+    public int[] getSize() { return size != null ? size.clone() : null; }
     public List<BlockRegion> getRegions() { return regions; }
     public List<BlockEntity> getBlockEntities() { return blockEntities; }
     public List<EntityData> getEntities() { return entities; }
 
-    public StructureMetadata getMetadata() { return metadata; }
-    public void setMetadata(StructureMetadata metadata) { this.metadata = metadata; }
-
-    public Structure clone() {
-        Structure cloned = new Structure();
-        cloned.setId(this.id);
-        cloned.setAuthor(this.author);
-        cloned.setCreated(this.created);
-        cloned.setSize(this.size != null ? this.size.clone() : null);
-
-        cloned.getRegions().addAll(this.regions);
-
-        cloned.getBlockEntities().addAll(this.blockEntities);
-
-        cloned.getEntities().addAll(this.entities);
-
-        if (this.metadata != null) {
-            StructureMetadata clonedMetadata = new StructureMetadata();
-            clonedMetadata.setSourceDimension(this.metadata.getSourceDimension());
-            clonedMetadata.setSourceBiome(this.metadata.getSourceBiome());
-            clonedMetadata.setSourceY(this.metadata.getSourceY());
-            clonedMetadata.setSourceWorldType(this.metadata.getSourceWorldType());
-            clonedMetadata.getAllowedDimensions().addAll(this.metadata.getAllowedDimensions());
-            clonedMetadata.getAllowedBiomes().addAll(this.metadata.getAllowedBiomes());
-            clonedMetadata.getForbiddenBiomes().addAll(this.metadata.getForbiddenBiomes());
-            clonedMetadata.setSpawnHeightRange(this.metadata.getSpawnHeightRange());
-            clonedMetadata.setSpawnChance(this.metadata.getSpawnChance());
-            clonedMetadata.setMinDistanceFromSame(this.metadata.getMinDistanceFromSame());
-            clonedMetadata.setMinDistanceFromAny(this.metadata.getMinDistanceFromAny());
-            clonedMetadata.setNaturalSpawning(this.metadata.isNaturalSpawning());
-            clonedMetadata.getTags().addAll(this.metadata.getTags());
-            clonedMetadata.setCategory(this.metadata.getCategory());
-            cloned.setMetadata(clonedMetadata);
+    // A copy; store edits through toBuilder().setMetadata()
+    public StructureMetadata getMetadata() { return metadata != null ? metadata.copy() : null; }
+
+    // The capture's volume, or a new one expanded from the regions that the caller drops when done;
+    // loaded structures never keep one, so lazily decoded regions stay lazy
+    StructureVolume buildVolume() {
+        StructureVolume captured = volume;
+        return captured != null ? captured : StructureVolume.fromRegions(size, regions, getPalette());
+    }
+
+    // Block states the palette ids of forEachBlock refer to; one pass over the regions, then kept
+    BlockPalette getPalette() {
+        StructureVolume captured = volume;
+        if (captured != null) return captured.getPalette();
+
+        BlockPalette computed = palette;
+        if (computed == null) {
+            computed = StructureVolume.paletteOf(regions);
+            palette = computed;
+        }
+        return computed;
+    }
+
+    public int getPaletteSize() { return getPalette().size(); }
+
+    // Material name of a palette id passed to forEachBlock
+    public String getMaterial(int paletteId) { return getPalette().get(paletteId).getMaterial(); }
+
+    // Block state properties of a palette id passed to forEachBlock; null if the state has none
+    public Map<String, Object> getProperties(int paletteId) { return getPalette().get(paletteId).getProperties(); }
+
+    boolean hasVolume() { return volume != null; }
+
+    // Computed on first use; metadata edits through toBuilder() keep them
+    public StructureStats getStats() {
+        StructureStats computed = stats;
+        if (computed == null) {
+            computed = StructureStats.compute(this);
+            stats = computed;
+        }
+        return computed;
+    }
+
+    // Visits the stored regions' blocks region by region, without expanding them into a volume. Regions the plugin
+    // captures or saves never overlap; hand-made ones may, and then a cell is visited once per region holding it.
+    public void forEachBlock(BlockVisitor visitor) {
+        BlockPalette palette = getPalette();
+        for (BlockRegion region : regions) {
+            StructureVolume.forEachBlock(region, palette, visitor);
+        }
+    }
+
+    // Same, with positions rotated around the origin like a placement and then shifted by the offset
+    public void forEachBlock(BlockVisitor visitor, int rotation, int offsetX, int offsetY, int offsetZ) {
+        forEachBlock(StructureVolume.rotated(visitor, rotation, offsetX, offsetY, offsetZ));
+    }
+
+    public static final class Builder {
+        private String id;
+        private String author;
+        private long created;
+        private int[] size;
+        private List<BlockRegion> regions = new ArrayList<>();
+        private List<BlockEntity> blockEntities = new ArrayList<>();
+        private List<EntityData> entities = new ArrayList<>();
+        private StructureMetadata metadata;
+        private StructureVolume volume;
+        private StructureStats stats;
+        private boolean shared;
+
+        private Builder() {
         }
 
-        return cloned;
+        public Builder setId(String id) { this.id = id; return this; }
+        public Builder setAuthor(String author) { this.author = author; return this; }
+        public Builder setCreated(long created) { this.created = created; return this; }
+        public Builder setSize(int[] size) { this.size = size; return this; }
+        public Builder setMetadata(StructureMetadata metadata) { this.metadata = metadata; return this; }
+
+        public int[] getSize() { return size; }
+
+        // Takes the list as is, so lazily decoded region lists stay lazy
+        Builder setRegions(List<BlockRegion> regions) {
+            this.regions = regions;
+            this.volume = null;
+            this.stats = null;
+            return this;
+        }
+
+        Builder setVolume(StructureVolume volume) { this.volume = volume; return this; }
+
+        public Builder addRegion(BlockRegion region) {
+            copyShared();
+            regions.add(region);
+            volume = null;
+            stats = null;
+            return this;
+        }
+
+        public Builder addRegions(List<BlockRegion> added) {
+            copyShared();
+            regions.addAll(added);
+            volume = null;
+            stats = null;
+            return this;
+        }
+
+        public Builder addBlockEntity(BlockEntity blockEntity) {
+            copyShared();
+            blockEntities.add(blockEntity);
+            stats = null;
+            return this;
+        }
+
+        public Builder addEntity(EntityData entity) {
+            copyShared();
+            entities.add(entity);
+            stats = null;
+            return this;
+        }
+
+        public Structure build() {
+            shared = true;
+            return new Structure(this);
+        }
+
+        private void copyShared() {
+            if (!shared) return;
+            regions = new ArrayList<>(regions);
+            blockEntities = new ArrayList<>(blockEntities);
+            entities = new ArrayList<>(entities);
+            shared = false;
+        }
     }
-}
\ No newline at end of file
+}
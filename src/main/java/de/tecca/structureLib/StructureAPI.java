@@ -2,44 +2,286 @@ package de.tecca.structureLib;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.sk89q.worldedit.regions.Region;
 import org.bukkit.Location;
 import org.bukkit.World;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
 
 class StructureAPI {
+    private static final String JSON_EXTENSION = ".json";
+
     private final Gson gson;
+    private final StructureBinaryFormat binaryFormat;
+    private final StructureBlobStore blobStore;
     private final EnhancedStructureCapture enhancedCapture;
+    private final File structuresFolder;
+    private final ExecutorService ioExecutor;
+    private final ExecutorService captureExecutor;
+    private final StructureRegistry registry;
+    private final StructureIndex index;
+    private final Map<File, PendingSave> pendingSaves;
 
-    public StructureAPI() {
+    public StructureAPI(File structuresFolder, StructureCodec codec, StructureLayout layout, long cacheBytes,
+                        boolean deduplicate) {
         this.gson = new GsonBuilder()
                 .setPrettyPrinting()
+                .registerTypeAdapterFactory(new StructureTypeAdapters())
                 .create();
-        this.enhancedCapture = new EnhancedStructureCapture();
+        this.blobStore = new StructureBlobStore(new File(structuresFolder, "blobs"));
+        this.binaryFormat = new StructureBinaryFormat(codec, blobStore, deduplicate);
+        this.enhancedCapture = new EnhancedStructureCapture(layout);
+        this.structuresFolder = structuresFolder;
+        this.ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "StructureLib-IO");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.captureExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "StructureLib-Capture");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.registry = new StructureRegistry(this, cacheBytes);
+        this.index = new StructureIndex(this, new File(structuresFolder.getParentFile(), "structure-index.json"));
+        this.pendingSaves = new HashMap<>();
+    }
+
+    public StructureRegistry getRegistry() {
+        return registry;
+    }
+
+    public StructureIndex getIndex() {
+        return index;
+    }
+
+    public StructureCodec getCodec() {
+        return binaryFormat.getCodec();
     }
 
     public Structure captureStructure(Region region, World world, String id) {
         return enhancedCapture.capture(region, world, id);
     }
 
+    // Must be called on the main thread; completes on the capture thread
+    public CompletableFuture<Structure> captureStructureAsync(Region region, World world, String id) {
+        return captureStructureAsync(region, world, id, null);
+    }
+
+    // Progress is reported on the main thread in 10% steps; cancelling the future stops the capture
+    public CompletableFuture<Structure> captureStructureAsync(Region region, World world, String id, IntConsumer progress) {
+        return enhancedCapture.captureAsync(region, world, id, captureExecutor, progress);
+    }
+
     public void saveStructure(Structure structure, File file) throws IOException {
-        Files.write(file.toPath(), gson.toJson(structure).getBytes());
+        saveStructure(structure, file, binaryFormat.getCodec());
+    }
+
+    private void saveStructure(Structure structure, File file, StructureCodec codec) throws IOException {
+        // Write next to the target and rename, so readers (and mapped files) never see a partial file
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+
+        if (file.getName().endsWith(StructureBinaryFormat.EXTENSION)) {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+                binaryFormat.write(structure, out, codec);
+            }
+        } else {
+            try (JsonWriter writer = gson.newJsonWriter(Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8))) {
+                gson.toJson(structure, Structure.class, writer);
+            }
+        }
+
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        String id = getStructureId(file);
+        registry.invalidate(id);
+        index.update(id, structure, file);
+    }
+
+    // Saves that are still queued for the same file are merged; only the newest structure is written
+    public CompletableFuture<Void> saveStructureAsync(Structure structure, File file) {
+        synchronized (pendingSaves) {
+            PendingSave pending = pendingSaves.get(file);
+            if (pending != null) {
+                pending.structure = structure;
+                return pending.future;
+            }
+
+            PendingSave save = new PendingSave(structure);
+            pendingSaves.put(file, save);
+            ioExecutor.execute(() -> runSave(file, save));
+            return save.future;
+        }
+    }
+
+    private void runSave(File file, PendingSave save) {
+        Structure structure;
+        synchronized (pendingSaves) {
+            pendingSaves.remove(file);
+            structure = save.structure;
+        }
+
+        try {
+            saveStructure(structure, file);
+            save.future.complete(null);
+        } catch (IOException | RuntimeException e) {
+            save.future.completeExceptionally(e);
+        }
+    }
+
+    public CompletableFuture<RecompressResult> recompressLibrary(StructureCodec codec) {
+        RecompressResult result = new RecompressResult();
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+
+        // One file per task, so saves queued in the meantime are not stuck behind the whole library
+        for (File file : listStructureFiles()) {
+            chain = chain.thenRunAsync(() -> recompressFile(file, codec, result), ioExecutor);
+        }
+
+        return chain.thenApplyAsync(ignored -> {
+            result.blobsRemoved = collectUnusedBlobs();
+            return result;
+        }, ioExecutor);
+    }
+
+    // Runs on the IO thread, so no save can write a blob between the scan and the sweep
+    private int collectUnusedBlobs() {
+        Set<String> referenced = new HashSet<>();
+        for (File file : listStructureFiles()) {
+            try {
+                referenced.addAll(StructureBinaryFormat.readBlobReferences(file));
+            } catch (IOException e) {
+                // Keep everything if any reference list is unreadable
+                StructureLib.getPlugin().getLogger().warning("Skipping blob cleanup, cannot read " + file.getName());
+                return 0;
+            }
+        }
+        return blobStore.retainOnly(referenced);
+    }
+
+    private void recompressFile(File file, StructureCodec codec, RecompressResult result) {
+        String id = getStructureId(file);
+        if (!getStructureFile(id).equals(file)) {
+            return;
+        }
+
+        try {
+            long before = file.length();
+            File target = new File(structuresFolder, id + StructureBinaryFormat.EXTENSION);
+
+            saveStructure(loadStructure(file), target, codec);
+            if (!target.equals(file)) {
+                Files.delete(file.toPath());
+                registry.invalidate(id);
+            }
+
+            result.files++;
+            result.bytesBefore += before;
+            result.bytesAfter += target.length();
+        } catch (IOException | RuntimeException e) {
+            result.failed++;
+            StructureLib.getPlugin().getLogger().log(Level.WARNING, "Failed to recompress " + file.getName(), e);
+        }
+    }
+
+    static String describeError(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof UncheckedIOException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error.getMessage();
+    }
+
+    public void shutdown() {
+        captureExecutor.shutdownNow();
+        ioExecutor.shutdown();
+        try {
+            if (!ioExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                StructureLib.getPlugin().getLogger().warning("Timed out waiting for pending structure saves");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        index.saveIfDirty();
+    }
+
+    // Loads through the registry on the IO thread and computes the stats there, so main-thread callers never decode
+    public CompletableFuture<Structure> getStructureAsync(String id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Structure structure = registry.get(id);
+                structure.getStats();
+                return structure;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, ioExecutor);
     }
 
     public Structure loadStructure(File file) throws IOException {
-        String json = Files.readString(file.toPath());
-        Structure structure = gson.fromJson(json, Structure.class);
+        Structure structure;
+
+        if (StructureBinaryFormat.isBinary(file)) {
+            structure = binaryFormat.read(file);
+        } else {
+            try (JsonReader reader = gson.newJsonReader(Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))) {
+                structure = gson.fromJson(reader, Structure.class);
+            }
+        }
+
+        if (structure == null) {
+            throw new IOException("Empty structure file: " + file.getName());
+        }
 
         if (structure.getMetadata() == null) {
-            structure.setMetadata(new StructureMetadata());
+            structure = structure.toBuilder().setMetadata(new StructureMetadata()).build();
         }
 
         return structure;
     }
 
+    public File getStructureFile(String id) {
+        File binary = new File(structuresFolder, id + StructureBinaryFormat.EXTENSION);
+        if (binary.exists()) return binary;
+
+        File json = new File(structuresFolder, id + JSON_EXTENSION);
+        if (json.exists()) return json;
+
+        return binary;
+    }
+
+    public File[] listStructureFiles() {
+        File[] files = structuresFolder.listFiles((dir, name) ->
+                name.endsWith(StructureBinaryFormat.EXTENSION) || name.endsWith(JSON_EXTENSION));
+        return files != null ? files : new File[0];
+    }
+
+    public String getStructureId(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
     public void placeStructure(Structure structure, Location location) {
         new StructurePlacer(StructureLib.getPlugin()).place(structure, location);
     }
@@ -51,4 +293,28 @@ class StructureAPI {
     public void placeStructure(Structure structure, Location location, int rotation, boolean randomRotation, LootProcessor lootProcessor) {
         new StructurePlacer(StructureLib.getPlugin()).place(structure, location, rotation, randomRotation, lootProcessor);
     }
-}
\ No newline at end of file
+
+    private static class PendingSave {
+        final CompletableFuture<Void> future;
+        Structure structure;
+
+        PendingSave(Structure structure) {
+            this.future = new CompletableFuture<>();
+            this.structure = structure;
+        }
+    }
+
+    static class RecompressResult {
+        private int files;
+        private int failed;
+        private long bytesBefore;
+        private long bytesAfter;
+        private int blobsRemoved;
+
+        public int getFiles() { return files; }
+        public int getFailed() { return failed; }
+        public long getBytesBefore() { return bytesBefore; }
+        public long getBytesAfter() { return bytesAfter; }
+        public int getBlobsRemoved() { return blobsRemoved; }
+    }
+}
@@ -0,0 +1,928 @@
+package de.tecca.structureLib;
+
+import com.google.gson.Gson;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+class StructureBinaryFormat {
+    public static final String EXTENSION = ".slb";
+
+    private static final int MAGIC = 0x534C4221;
+    private static final int VERSION = 5;
+    private static final int BLOB_VERSION = 4;
+    private static final int CODEC_VERSION = 3;
+    private static final int LEGACY_VERSION = 1;
+    private static final long LAZY_LOAD_THRESHOLD = 1L << 20;
+    private static final int REGION_CHUNK_BYTES = 64 * 1024;
+
+    // Upper bounds for counts read from a file, checked before anything is allocated from them
+    static final int MAX_PALETTE_SIZE = 1 << 20;
+    static final int MAX_COUNT = 1 << 24;
+
+    private static final String[] REGION_TYPES = {"fill", "hollow", "plane", "line", "individual", SectionRegion.TYPE};
+    private static final int INDIVIDUAL = 4;
+    private static final int SECTION = 5;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_FALSE = 1;
+    private static final int TAG_TRUE = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_DOUBLE = 5;
+    private static final int TAG_STRING = 6;
+    private static final int TAG_LIST = 7;
+    private static final int TAG_MAP = 8;
+
+    private final Gson gson;
+    private final StructureCodec codec;
+    private final StructureBlobStore blobStore;
+    private final boolean deduplicate;
+
+    public StructureBinaryFormat(StructureCodec codec, StructureBlobStore blobStore, boolean deduplicate) {
+        this.gson = new Gson();
+        this.codec = codec;
+        this.blobStore = blobStore;
+        this.deduplicate = deduplicate;
+    }
+
+    public StructureCodec getCodec() {
+        return codec;
+    }
+
+    public static boolean isBinary(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    // Hex hashes of the region blobs a file refers to, read from the uncompressed header only
+    public static Set<String> readBlobReferences(File file) throws IOException {
+        Set<String> hashes = new HashSet<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() < BLOB_VERSION) {
+                return hashes;
+            }
+            in.readUnsignedByte();
+
+            int count = readCount(in, MAX_COUNT);
+            byte[] hash = new byte[StructureBlobStore.HASH_LENGTH];
+            for (int i = 0; i < count; i++) {
+                in.readFully(hash);
+                hashes.add(HexFormat.of().formatHex(hash));
+            }
+        } catch (EOFException e) {
+            // Not a complete binary file, so it references nothing
+        }
+        return hashes;
+    }
+
+    // Heap retained by a lazily decoded region list, or -1 if the regions are already decoded; shared blobs are left out
+    public static long lazyRetainedBytes(List<BlockRegion> regions) {
+        if (regions instanceof LazyRegionList lazy) return lazy.retainedBytes();
+        if (regions instanceof BlobRegionList blobs) return blobs.retainedBytes();
+        return -1;
+    }
+
+    // Heap retained by each shared blob a region list is built from, keyed by blob hash
+    public static Map<String, Long> sharedRetainedBytes(List<BlockRegion> regions) {
+        return regions instanceof BlobRegionList blobs ? blobs.sharedRetainedBytes() : Map.of();
+    }
+
+    // Regions decoded on access from a blob's raw bytes; one pass finds where each region starts
+    static List<BlockRegion> lazyRegions(ByteBuffer regionData, int count, BlockPalette.Entry[] palette) throws IOException {
+        ByteBuffer data = regionData.slice();
+        ByteBuffer scan = data.duplicate();
+        DataInputStream in = new DataInputStream(new BufferInputStream(scan));
+
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = scan.position();
+            skipRegion(in);
+        }
+
+        return new LazyRegionList(data, StructureCodec.NONE, offsets,
+                new int[]{0}, new int[]{data.remaining()}, new int[]{data.remaining()}, palette);
+    }
+
+    public void write(Structure structure, OutputStream stream) throws IOException {
+        write(structure, stream, codec);
+    }
+
+    public void write(Structure structure, OutputStream stream, StructureCodec codec) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(codec.getId());
+
+        List<byte[]> blobs = deduplicate ? blobStore.write(structure.getRegions(), codec) : List.of();
+        writeVarInt(out, blobs.size());
+        for (byte[] hash : blobs) {
+            out.write(hash);
+        }
+
+        // Header and regions are stored as separate blocks, so regions can stay encoded when loading
+        boolean inlineRegions = blobs.isEmpty();
+        BlockPalette palette = inlineRegions ? buildPalette(structure) : new BlockPalette();
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeHeader(new DataOutputStream(header), structure, palette);
+        writeBlock(out, header.toByteArray(), codec);
+
+        if (inlineRegions) {
+            writeRegions(out, structure.getRegions(), palette, codec);
+        }
+
+        out.flush();
+    }
+
+    private void writeHeader(DataOutputStream out, Structure structure, BlockPalette palette) throws IOException {
+        writeString(out, structure.getId());
+        writeString(out, structure.getAuthor());
+        out.writeLong(structure.getCreated());
+        writeIntArray(out, structure.getSize());
+        writeString(out, structure.getMetadata() != null ? gson.toJson(structure.getMetadata()) : null);
+
+        writeVarInt(out, palette.size());
+        for (BlockPalette.Entry entry : palette.getEntries()) {
+            writeString(out, entry.getMaterial());
+            writeValue(out, entry.getProperties());
+        }
+
+        writeVarInt(out, structure.getBlockEntities().size());
+        for (BlockEntity blockEntity : structure.getBlockEntities()) {
+            writeIntArray(out, blockEntity.getPos());
+            writeString(out, blockEntity.getType());
+            writeValue(out, blockEntity.getData());
+        }
+
+        writeVarInt(out, structure.getEntities().size());
+        for (EntityData entity : structure.getEntities()) {
+            double[] pos = entity.getPos();
+            out.writeDouble(pos[0]);
+            out.writeDouble(pos[1]);
+            out.writeDouble(pos[2]);
+            writeString(out, entity.getType());
+            writeValue(out, entity.getData());
+        }
+    }
+
+    // Regions are compressed in chunks of about REGION_CHUNK_BYTES; each offset points into its chunk's raw bytes
+    private static void writeRegions(DataOutputStream out, List<BlockRegion> regions, BlockPalette palette,
+                                     StructureCodec codec) throws IOException {
+        int[] offsets = new int[regions.size()];
+        List<int[]> chunks = new ArrayList<>();
+        List<byte[]> stored = new ArrayList<>();
+
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        DataOutputStream chunkOut = new DataOutputStream(chunk);
+        int chunkFirst = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            if (chunk.size() >= REGION_CHUNK_BYTES) {
+                chunks.add(new int[]{chunkFirst, chunk.size()});
+                stored.add(codec.compress(chunk.toByteArray()));
+                chunk.reset();
+                chunkFirst = i;
+            }
+            offsets[i] = chunk.size();
+            writeRegion(chunkOut, regions.get(i), palette);
+        }
+        if (offsets.length > 0) {
+            chunks.add(new int[]{chunkFirst, chunk.size()});
+            stored.add(codec.compress(chunk.toByteArray()));
+        }
+
+        writeVarInt(out, offsets.length);
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+
+        writeVarInt(out, chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            writeVarInt(out, chunks.get(i)[0]);
+            out.writeInt(chunks.get(i)[1]);
+            out.writeInt(stored.get(i).length);
+        }
+        for (byte[] bytes : stored) {
+            out.write(bytes);
+        }
+    }
+
+    private static void writeBlock(DataOutputStream out, byte[] raw, StructureCodec codec) throws IOException {
+        byte[] stored = codec.compress(raw);
+        out.writeInt(raw.length);
+        out.writeInt(stored.length);
+        out.write(stored);
+    }
+
+    // Read onto the heap, never mapped: a cached structure keeps its region bytes for as long as it lives, and a
+    // mapping faults once the file is overwritten or truncated in place (and blocks renames onto it on Windows).
+    // Large files still keep their regions encoded and decode one chunk at a time.
+    public Structure read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Structure file too large: " + size + " bytes");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the whole file is buffered
+            }
+            buffer.flip();
+            return read(buffer, size >= LAZY_LOAD_THRESHOLD);
+        }
+    }
+
+    public Structure read(ByteBuffer buffer, boolean lazy) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferInputStream(buffer));
+
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a binary structure file");
+        }
+        int version = in.readUnsignedByte();
+        if (version > VERSION || version < LEGACY_VERSION) {
+            throw new IOException("Unsupported binary structure version: " + version);
+        }
+
+        List<byte[]> blobs = List.of();
+        StructureCodec codec = StructureCodec.NONE;
+        DataInputStream body = in;
+        if (version >= CODEC_VERSION) {
+            int codecId = in.readUnsignedByte();
+            codec = StructureCodec.byId(codecId);
+            if (codec == null) {
+                throw new IOException("Unknown structure codec: " + codecId);
+            }
+
+            if (version >= BLOB_VERSION) {
+                int blobCount = readCount(in, MAX_COUNT);
+                blobs = new ArrayList<>(blobCount);
+                for (int i = 0; i < blobCount; i++) {
+                    byte[] hash = new byte[StructureBlobStore.HASH_LENGTH];
+                    in.readFully(hash);
+                    blobs.add(hash);
+                }
+            }
+
+            if (version >= VERSION) {
+                int rawLength = in.readInt();
+                body = new DataInputStream(new BufferInputStream(readBlock(buffer, codec, rawLength, in.readInt())));
+            } else if (codec != StructureCodec.NONE) {
+                buffer = ByteBuffer.wrap(codec.decompress(buffer, in.readInt()));
+                in = new DataInputStream(new BufferInputStream(buffer));
+                body = in;
+            }
+        }
+
+        String id = readString(body);
+        String author = readString(body);
+        long created = body.readLong();
+        int[] size = readIntArray(body);
+        String metadataJson = readString(body);
+
+        int paletteSize = readCount(body, MAX_PALETTE_SIZE);
+        BlockPalette.Entry[] palette = new BlockPalette.Entry[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            String material = readString(body);
+            palette[i] = BlockPalette.intern(material, readMap(body));
+        }
+
+        List<BlockRegion> regions = null;
+        if (version == LEGACY_VERSION) {
+            regions = readRegions(body, readCount(body, MAX_COUNT), palette);
+        }
+
+        List<BlockEntity> blockEntities = new ArrayList<>();
+        int blockEntityCount = readCount(body, MAX_COUNT);
+        for (int i = 0; i < blockEntityCount; i++) {
+            int[] pos = readIntArray(body);
+            BlockEntity blockEntity = new BlockEntity(pos, readString(body));
+            Map<String, Object> data = readMap(body);
+            if (data != null) {
+                blockEntity.getData().putAll(data);
+            }
+            blockEntities.add(blockEntity);
+        }
+
+        List<EntityData> entities = new ArrayList<>();
+        int entityCount = readCount(body, MAX_COUNT);
+        for (int i = 0; i < entityCount; i++) {
+            double[] pos = {body.readDouble(), body.readDouble(), body.readDouble()};
+            EntityData entity = new EntityData(pos, readString(body));
+            Map<String, Object> data = readMap(body);
+            if (data != null) {
+                entity.getData().putAll(data);
+            }
+            entities.add(entity);
+        }
+
+        if (regions == null && !blobs.isEmpty()) {
+            // Blob region lists are shared with every other structure that references the same blobs
+            String[] hashes = new String[blobs.size()];
+            List<List<BlockRegion>> parts = new ArrayList<>(blobs.size());
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = HexFormat.of().formatHex(blobs.get(i));
+                parts.add(blobStore.read(blobs.get(i)));
+            }
+            regions = new BlobRegionList(hashes, parts);
+        }
+
+        if (regions == null && version >= VERSION) {
+            LazyRegionList chunked = readRegionTable(in, buffer, codec, palette);
+            regions = lazy ? chunked : new ArrayList<>(chunked);
+        }
+
+        if (regions == null) {
+            int regionCount = readCount(in, MAX_COUNT);
+            int[] offsets = new int[regionCount];
+            for (int i = 0; i < regionCount; i++) {
+                offsets[i] = in.readInt();
+            }
+
+            ByteBuffer regionData = buffer.slice();
+            regions = lazy
+                    ? new LazyRegionList(regionData, StructureCodec.NONE, offsets,
+                            new int[]{0}, new int[]{regionData.remaining()}, new int[]{regionData.remaining()}, palette)
+                    : readRegions(in, regionCount, palette);
+        }
+
+        Structure.Builder structure = Structure.builder()
+                .setId(id)
+                .setAuthor(author)
+                .setCreated(created)
+                .setSize(size)
+                .setRegions(regions);
+        if (metadataJson != null) {
+            structure.setMetadata(gson.fromJson(metadataJson, StructureMetadata.class));
+        }
+        blockEntities.forEach(structure::addBlockEntity);
+        entities.forEach(structure::addEntity);
+
+        return structure.build();
+    }
+
+    private static LazyRegionList readRegionTable(DataInputStream in, ByteBuffer buffer, StructureCodec codec,
+                                                  BlockPalette.Entry[] palette) throws IOException {
+        int[] offsets = new int[readCount(in, MAX_COUNT)];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = in.readInt();
+        }
+
+        // Every chunk starts at a later region than the one before it
+        int chunkCount = readCount(in, offsets.length);
+        int[] chunkFirst = new int[chunkCount];
+        int[] rawLengths = new int[chunkCount];
+        int[] storedLengths = new int[chunkCount];
+        long total = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            chunkFirst[i] = readVarInt(in);
+            rawLengths[i] = in.readInt();
+            storedLengths[i] = in.readInt();
+            if (rawLengths[i] < 0 || storedLengths[i] < 0 || chunkFirst[i] >= offsets.length
+                    || (i == 0 ? chunkFirst[i] != 0 : chunkFirst[i] <= chunkFirst[i - 1])) {
+                throw new IOException("Corrupt region table");
+            }
+            total += storedLengths[i];
+        }
+        if (chunkCount == 0 && offsets.length > 0) {
+            throw new IOException("Corrupt region table");
+        }
+        if (total > buffer.remaining()) {
+            throw new IOException("Truncated structure payload");
+        }
+
+        return new LazyRegionList(buffer.slice(buffer.position(), (int) total), codec, offsets,
+                chunkFirst, rawLengths, storedLengths, palette);
+    }
+
+    // Uncompressed blocks stay a view of the source buffer, so the file bytes are not copied twice
+    private static ByteBuffer readBlock(ByteBuffer buffer, StructureCodec codec, int rawLength, int storedLength) throws IOException {
+        if (storedLength < 0 || rawLength < 0 || buffer.remaining() < storedLength) {
+            throw new IOException("Truncated structure payload");
+        }
+
+        ByteBuffer stored = buffer.slice(buffer.position(), storedLength);
+        buffer.position(buffer.position() + storedLength);
+        if (codec != StructureCodec.NONE) {
+            return ByteBuffer.wrap(codec.decompress(stored, rawLength));
+        }
+        if (rawLength != storedLength) {
+            throw new IOException("Corrupt structure payload");
+        }
+        return stored;
+    }
+
+    private static List<BlockRegion> readRegions(DataInputStream in, int count, BlockPalette.Entry[] palette) throws IOException {
+        List<BlockRegion> regions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            regions.add(readRegion(in, palette));
+        }
+        return regions;
+    }
+
+    private BlockPalette buildPalette(Structure structure) {
+        BlockPalette palette = new BlockPalette();
+        for (BlockRegion region : structure.getRegions()) {
+            if (region instanceof SectionRegion section) {
+                for (BlockPalette.Entry entry : section.getPalette()) {
+                    palette.idFor(entry.getMaterial(), entry.getProperties());
+                }
+            } else if (region.getType().equals("individual")) {
+                if (region.getBlocks() != null) {
+                    for (BlockData block : region.getBlocks()) {
+                        palette.idFor(block.getMaterial(), block.getProperties());
+                    }
+                }
+            } else {
+                palette.idFor(region.getMaterial(), region.getProperties());
+            }
+        }
+        return palette;
+    }
+
+    static void writeRegion(DataOutputStream out, BlockRegion region, BlockPalette palette) throws IOException {
+        int type = regionTypeId(region.getType());
+        out.writeByte(type);
+
+        if (type == INDIVIDUAL) {
+            List<BlockData> blocks = region.getBlocks() != null ? region.getBlocks() : List.of();
+            writeVarInt(out, blocks.size());
+
+            int lastX = 0, lastY = 0, lastZ = 0;
+            for (BlockData block : blocks) {
+                int[] pos = block.getPos();
+                writeVarInt(out, zigZag(pos[0] - lastX));
+                writeVarInt(out, zigZag(pos[1] - lastY));
+                writeVarInt(out, zigZag(pos[2] - lastZ));
+                writeVarInt(out, palette.idFor(block.getMaterial(), block.getProperties()));
+                lastX = pos[0];
+                lastY = pos[1];
+                lastZ = pos[2];
+            }
+            return;
+        }
+
+        int[] start = region.getStart();
+        int[] end = region.getEnd();
+        if (start == null || end == null) {
+            throw new IOException("Region of type '" + region.getType() + "' has no bounds");
+        }
+
+        for (int axis = 0; axis < 3; axis++) {
+            writeVarInt(out, zigZag(start[axis]));
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            writeVarInt(out, zigZag(end[axis] - start[axis]));
+        }
+
+        if (type == SECTION) {
+            if (!(region instanceof SectionRegion section)) {
+                throw new IOException("Section region has no section data");
+            }
+            writeVarInt(out, section.getPalette().length);
+            for (BlockPalette.Entry entry : section.getPalette()) {
+                writeVarInt(out, palette.idFor(entry.getMaterial(), entry.getProperties()));
+            }
+            out.writeByte(section.getBits());
+            for (long word : section.getData()) {
+                out.writeLong(word);
+            }
+            return;
+        }
+
+        writeVarInt(out, palette.idFor(region.getMaterial(), region.getProperties()));
+    }
+
+    static BlockRegion readRegion(DataInputStream in, BlockPalette.Entry[] palette) throws IOException {
+        int type = in.readUnsignedByte();
+        if (type >= REGION_TYPES.length) {
+            throw new IOException("Unknown region type id: " + type);
+        }
+
+        BlockRegion region = new BlockRegion(REGION_TYPES[type]);
+
+        if (type == INDIVIDUAL) {
+            int count = readCount(in, MAX_COUNT);
+            long[] positions = new long[count];
+            int[] paletteIds = new int[count];
+
+            int x = 0, y = 0, z = 0;
+            for (int i = 0; i < count; i++) {
+                x += unZigZag(readVarInt(in));
+                y += unZigZag(readVarInt(in));
+                z += unZigZag(readVarInt(in));
+                positions[i] = StructureVolume.pack(x, y, z);
+                paletteIds[i] = readVarInt(in);
+                if (paletteIds[i] < 0 || paletteIds[i] >= palette.length) {
+                    throw new IOException("Palette index out of range: " + paletteIds[i]);
+                }
+            }
+
+            region.setBlocks(new PackedBlockList(positions, paletteIds, palette));
+            return region;
+        }
+
+        int[] start = new int[3];
+        for (int axis = 0; axis < 3; axis++) {
+            start[axis] = unZigZag(readVarInt(in));
+        }
+        int[] end = new int[3];
+        for (int axis = 0; axis < 3; axis++) {
+            end[axis] = start[axis] + unZigZag(readVarInt(in));
+        }
+
+        if (type == SECTION) {
+            BlockPalette.Entry[] entries = new BlockPalette.Entry[readCount(in, SectionRegion.CELLS)];
+            for (int i = 0; i < entries.length; i++) {
+                int id = readVarInt(in);
+                if (id < 0 || id >= palette.length) {
+                    throw new IOException("Palette index out of range: " + id);
+                }
+                entries[i] = palette[id];
+            }
+
+            int bits = in.readUnsignedByte();
+            if (bits < SectionRegion.bitsFor(entries.length) || bits > 32) {
+                throw new IOException("Invalid section index width: " + bits);
+            }
+            long[] data = new long[SectionRegion.wordsFor(bits)];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = in.readLong();
+            }
+
+            SectionRegion section = new SectionRegion(start, end, entries, bits, data);
+            for (int index = 0; index < SectionRegion.CELLS; index++) {
+                if (section.get(index) >= entries.length) {
+                    throw new IOException("Section index out of range at cell " + index);
+                }
+            }
+            return section;
+        }
+
+        int id = readVarInt(in);
+        if (id < 0 || id >= palette.length) {
+            throw new IOException("Palette index out of range: " + id);
+        }
+        BlockPalette.Entry entry = palette[id];
+
+        region.setStart(start);
+        region.setEnd(end);
+        region.setMaterial(entry.getMaterial());
+        region.setProperties(entry.getProperties());
+        return region;
+    }
+
+    private static void skipRegion(DataInputStream in) throws IOException {
+        int type = in.readUnsignedByte();
+        if (type >= REGION_TYPES.length) {
+            throw new IOException("Unknown region type id: " + type);
+        }
+
+        if (type == INDIVIDUAL) {
+            long values = readVarInt(in) * 4L;
+            for (long i = 0; i < values; i++) {
+                readVarInt(in);
+            }
+            return;
+        }
+
+        for (int i = 0; i < 6; i++) {
+            readVarInt(in);
+        }
+
+        if (type == SECTION) {
+            int entries = readVarInt(in);
+            for (int i = 0; i < entries; i++) {
+                readVarInt(in);
+            }
+            in.skipNBytes(SectionRegion.wordsFor(in.readUnsignedByte()) * 8L);
+            return;
+        }
+
+        readVarInt(in);
+    }
+
+    private static int regionTypeId(String type) throws IOException {
+        for (int i = 0; i < REGION_TYPES.length; i++) {
+            if (REGION_TYPES[i].equals(type)) return i;
+        }
+        throw new IOException("Unknown region type: " + type);
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("VarInt too long");
+    }
+
+    static int readCount(DataInput in, int max) throws IOException {
+        int count = readVarInt(in);
+        if (count < 0 || count > max) {
+            throw new IOException("Count out of range: " + count);
+        }
+        return count;
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("VarLong too long");
+    }
+
+    static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = readCount(in, MAX_COUNT);
+        if (length == 0) return null;
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeIntArray(DataOutput out, int[] values) throws IOException {
+        if (values == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, values.length + 1);
+        for (int value : values) {
+            writeVarInt(out, zigZag(value));
+        }
+    }
+
+    private static int[] readIntArray(DataInput in) throws IOException {
+        int length = readCount(in, MAX_COUNT);
+        if (length == 0) return null;
+        int[] values = new int[length - 1];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = unZigZag(readVarInt(in));
+        }
+        return values;
+    }
+
+    static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(bool ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(TAG_INT);
+            writeVarInt(out, zigZag(((Number) value).intValue()));
+        } else if (value instanceof Long longValue) {
+            out.writeByte(TAG_LONG);
+            writeVarLong(out, (longValue << 1) ^ (longValue >> 63));
+        } else if (value instanceof Number number) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble(number.doubleValue());
+        } else if (value instanceof Collection<?> collection) {
+            out.writeByte(TAG_LIST);
+            writeVarInt(out, collection.size());
+            for (Object element : collection) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(TAG_MAP);
+            writeVarInt(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            out.writeByte(TAG_STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    static Object readValue(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_INT:
+                return unZigZag(readVarInt(in));
+            case TAG_LONG: {
+                long raw = readVarLong(in);
+                return (raw >>> 1) ^ -(raw & 1);
+            }
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_STRING:
+                return readString(in);
+            case TAG_LIST: {
+                int size = readCount(in, MAX_COUNT);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case TAG_MAP: {
+                int size = readCount(in, MAX_COUNT);
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    String key = readString(in);
+                    map.put(key, readValue(in));
+                }
+                return map;
+            }
+            default:
+                throw new IOException("Unknown value tag: " + tag);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> readMap(DataInput in) throws IOException {
+        Object value = readValue(in);
+        if (value != null && !(value instanceof Map)) {
+            throw new IOException("Expected map value but found " + value.getClass().getSimpleName());
+        }
+        return (Map<String, Object>) value;
+    }
+
+    // Decodes regions on access; compressed chunks are inflated one at a time and only the last one is kept
+    private static class LazyRegionList extends AbstractList<BlockRegion> implements RandomAccess {
+        private final ByteBuffer regionData;
+        private final StructureCodec codec;
+        private final int[] offsets;
+        private final int[] chunkFirst;
+        private final int[] chunkStart;
+        private final int[] rawLengths;
+        private final int[] storedLengths;
+        private final BlockPalette.Entry[] palette;
+
+        private int cachedChunk = -1;
+        private ByteBuffer cachedData;
+
+        LazyRegionList(ByteBuffer regionData, StructureCodec codec, int[] offsets, int[] chunkFirst,
+                       int[] rawLengths, int[] storedLengths, BlockPalette.Entry[] palette) {
+            this.regionData = regionData;
+            this.codec = codec;
+            this.offsets = offsets;
+            this.chunkFirst = chunkFirst;
+            this.rawLengths = rawLengths;
+            this.storedLengths = storedLengths;
+            this.palette = palette;
+
+            this.chunkStart = new int[chunkFirst.length];
+            for (int i = 1; i < chunkStart.length; i++) {
+                chunkStart[i] = chunkStart[i - 1] + storedLengths[i - 1];
+            }
+        }
+
+        @Override
+        public BlockRegion get(int index) {
+            int chunk = Arrays.binarySearch(chunkFirst, index);
+            if (chunk < 0) chunk = -chunk - 2;
+
+            try {
+                ByteBuffer view = chunkData(chunk).duplicate();
+                view.position(offsets[index]);
+                return readRegion(new DataInputStream(new BufferInputStream(view)), palette);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Corrupt region " + index, e);
+            }
+        }
+
+        @Override
+        public int size() {
+            return offsets.length;
+        }
+
+        private synchronized ByteBuffer chunkData(int chunk) throws IOException {
+            ByteBuffer stored = regionData.slice(chunkStart[chunk], storedLengths[chunk]);
+            if (codec == StructureCodec.NONE) return stored;
+
+            if (cachedChunk != chunk) {
+                cachedData = ByteBuffer.wrap(codec.decompress(stored, rawLengths[chunk]));
+                cachedChunk = chunk;
+            }
+            return cachedData;
+        }
+
+        synchronized long retainedBytes() {
+            return offsets.length * 4L + chunkFirst.length * 16L
+                    + (regionData.isDirect() ? 0 : regionData.capacity())
+                    + (cachedData != null ? cachedData.capacity() : 0);
+        }
+    }
+
+    private static class BlobRegionList extends AbstractList<BlockRegion> implements RandomAccess {
+        private final String[] hashes;
+        private final List<List<BlockRegion>> parts;
+        private final int[] starts;
+
+        BlobRegionList(String[] hashes, List<List<BlockRegion>> parts) {
+            this.hashes = hashes;
+            this.parts = parts;
+            this.starts = new int[parts.size() + 1];
+            for (int i = 0; i < parts.size(); i++) {
+                starts[i + 1] = starts[i] + parts.get(i).size();
+            }
+        }
+
+        @Override
+        public BlockRegion get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Region " + index + " of " + size());
+            }
+
+            int part = Arrays.binarySearch(starts, index);
+            part = part >= 0 ? part : -part - 2;
+            while (starts[part + 1] <= index) {
+                part++;
+            }
+            return parts.get(part).get(index - starts[part]);
+        }
+
+        @Override
+        public int size() {
+            return starts[starts.length - 1];
+        }
+
+        long retainedBytes() {
+            return 32 + hashes.length * 96L;
+        }
+
+        Map<String, Long> sharedRetainedBytes() {
+            Map<String, Long> shared = new HashMap<>();
+            for (int i = 0; i < hashes.length; i++) {
+                long bytes = lazyRetainedBytes(parts.get(i));
+                shared.put(hashes[i], bytes >= 0 ? bytes : parts.get(i).size() * 96L);
+            }
+            return shared;
+        }
+    }
+
+    private static class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) return -1;
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,197 @@
+package de.tecca.structureLib;
+
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+// Region payloads stored once per content hash, shared by every structure that references them
+class StructureBlobStore {
+    public static final int HASH_LENGTH = 32;
+
+    private static final int MIN_REGIONS = 16;
+    private static final int MAX_REGIONS = 4096;
+    private static final int BOUNDARY_MASK = 0xFF;
+    private static final String EXTENSION = ".blob";
+
+    private final File folder;
+    private final Map<String, WeakReference<List<BlockRegion>>> decoded;
+
+    public StructureBlobStore(File folder) {
+        this.folder = folder;
+        this.decoded = new HashMap<>();
+    }
+
+    // Splits regions at content-defined boundaries, so an edit only changes the blobs around it
+    public List<byte[]> write(List<BlockRegion> regions, StructureCodec codec) throws IOException {
+        List<byte[]> hashes = new ArrayList<>();
+        int start = 0;
+
+        for (int i = 0; i < regions.size(); i++) {
+            int count = i - start + 1;
+            boolean boundary = count >= MIN_REGIONS && (boundaryHash(regions.get(i)) & BOUNDARY_MASK) == 0;
+
+            if (boundary || count >= MAX_REGIONS || i == regions.size() - 1) {
+                hashes.add(writeBlob(regions.subList(start, i + 1), codec));
+                start = i + 1;
+            }
+        }
+
+        return hashes;
+    }
+
+    public List<BlockRegion> read(byte[] hash) throws IOException {
+        String name = HexFormat.of().formatHex(hash);
+
+        synchronized (decoded) {
+            WeakReference<List<BlockRegion>> reference = decoded.get(name);
+            List<BlockRegion> regions = reference != null ? reference.get() : null;
+            if (regions != null) {
+                return regions;
+            }
+        }
+
+        List<BlockRegion> regions = readBlob(blobFile(name));
+
+        synchronized (decoded) {
+            if (decoded.size() >= 1024 && decoded.size() % 1024 == 0) {
+                decoded.values().removeIf(reference -> reference.get() == null);
+            }
+            decoded.put(name, new WeakReference<>(regions));
+        }
+
+        return regions;
+    }
+
+    // Deletes blobs no structure file refers to any more; returns the number removed
+    public int retainOnly(Set<String> referenced) {
+        File[] buckets = folder.listFiles(File::isDirectory);
+        if (buckets == null) return 0;
+
+        int removed = 0;
+        for (File bucket : buckets) {
+            File[] blobs = bucket.listFiles((dir, name) -> name.endsWith(EXTENSION));
+            if (blobs == null) continue;
+
+            for (File blob : blobs) {
+                String name = blob.getName().substring(0, blob.getName().length() - EXTENSION.length());
+                if (!referenced.contains(name) && blob.delete()) {
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private byte[] writeBlob(List<BlockRegion> regions, StructureCodec codec) throws IOException {
+        BlockPalette palette = new BlockPalette();
+        ByteArrayOutputStream regionBytes = new ByteArrayOutputStream();
+        DataOutputStream regionOut = new DataOutputStream(regionBytes);
+        for (BlockRegion region : regions) {
+            StructureBinaryFormat.writeRegion(regionOut, region, palette);
+        }
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream(regionBytes.size() + 256);
+        DataOutputStream out = new DataOutputStream(content);
+        StructureBinaryFormat.writeVarInt(out, palette.size());
+        for (BlockPalette.Entry entry : palette.getEntries()) {
+            StructureBinaryFormat.writeString(out, entry.getMaterial());
+            StructureBinaryFormat.writeValue(out, entry.getProperties());
+        }
+        StructureBinaryFormat.writeVarInt(out, regions.size());
+        regionBytes.writeTo(out);
+
+        byte[] raw = content.toByteArray();
+        byte[] hash = sha256(raw);
+        File file = blobFile(HexFormat.of().formatHex(hash));
+
+        // Blobs are named by their raw content, so one written with another codec is rewritten in place;
+        // that is how a library recompress reaches the shared regions
+        if (storedCodec(file) != codec.getId()) {
+            file.getParentFile().mkdirs();
+            File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+            try (DataOutputStream blobOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                blobOut.writeByte(codec.getId());
+                blobOut.writeInt(raw.length);
+                blobOut.write(codec.compress(raw));
+            }
+
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        return hash;
+    }
+
+    // Codec id of a blob on disk, or -1 if there is none or it cannot be read
+    private static int storedCodec(File file) {
+        if (!file.exists()) return -1;
+
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private List<BlockRegion> readBlob(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        int codecId = buffer.get() & 0xFF;
+        StructureCodec codec = StructureCodec.byId(codecId);
+        if (codec == null) {
+            throw new IOException("Unknown codec " + codecId + " in blob " + file.getName());
+        }
+        byte[] raw = codec.decompress(buffer, buffer.getInt());
+
+        ByteArrayInputStream bytes = new ByteArrayInputStream(raw);
+        DataInputStream in = new DataInputStream(bytes);
+        int paletteSize = StructureBinaryFormat.readCount(in, StructureBinaryFormat.MAX_PALETTE_SIZE);
+        BlockPalette.Entry[] palette = new BlockPalette.Entry[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            String material = StructureBinaryFormat.readString(in);
+            palette[i] = BlockPalette.intern(material, StructureBinaryFormat.readMap(in));
+        }
+
+        // Regions stay encoded and are decoded on access by whichever structure reads them
+        int count = StructureBinaryFormat.readCount(in, StructureBinaryFormat.MAX_COUNT);
+        int start = raw.length - bytes.available();
+        return StructureBinaryFormat.lazyRegions(ByteBuffer.wrap(raw, start, raw.length - start), count, palette);
+    }
+
+    private File blobFile(String name) {
+        return new File(new File(folder, name.substring(0, 2)), name + EXTENSION);
+    }
+
+    private static int boundaryHash(BlockRegion region) {
+        int hash = region.getType().hashCode();
+        hash = 31 * hash + Arrays.hashCode(region.getStart());
+        hash = 31 * hash + Arrays.hashCode(region.getEnd());
+        hash = 31 * hash + Objects.hashCode(region.getMaterial());
+        if (region.getBlocks() != null && !region.getBlocks().isEmpty()) {
+            BlockData first = region.getBlocks().get(0);
+            hash = 31 * hash + Arrays.hashCode(first.getPos());
+            hash = 31 * hash + Objects.hashCode(first.getMaterial());
+        }
+
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package de.tecca.structureLib;
 
 import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
@@ -13,13 +16,32 @@ import org.bukkit.entity.EntityType;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitRunnable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 class StructureCapture {
-    private static final int MIN_OPTIMIZATION_SIZE = 8;
-    private static final int MAX_REGION_SIZE = 10000;
+    private static final long MAX_BLOCKING_CAPTURE_BLOCKS = 1000000;
+    // The whole volume, the decomposer's bitmap and the regions are held until the capture is saved, so async
+    // captures share a quarter of the heap at the worst-case cost per cell, under a fixed ceiling. Worst case is a
+    // fully solid selection no box can merge. Sparse volume: 12 bytes per entry, 2x growth headroom and the old arrays
+    // while growing (36); sorting adds the order, merge buffer and sorted copies (56 in all, 12 once sorted).
+    // Decomposing adds one bit per cell and up to ~27 bytes of regions per block; encoding for the save up to ~24.
+    // Dense volumes (2 bytes per cell) peak lower, so 64 bytes per cell covers both.
+    private static final long MAX_CAPTURE_BLOCKS = 1L << 28;
+    private static final int CAPTURE_BYTES_PER_BLOCK = 64;
+    private static final long TICK_BUDGET_NANOS = 5_000_000L;
+    private static final int MAX_CHUNKS_PER_TICK = 64;
+    private static final int MAX_QUEUED_CHUNKS = 256;
+    // Blocks claimed by async captures that have not finished yet
+    private static long reservedBlocks;
     private static final Set<Material> BLACKLISTED_MATERIALS = Set.of(
             Material.AIR, Material.CAVE_AIR, Material.VOID_AIR,
             Material.STRUCTURE_VOID, Material.BARRIER
@@ -29,189 +51,183 @@ class StructureCapture {
             EntityType.EXPERIENCE_ORB, EntityType.LIGHTNING_BOLT
     );
 
-    public Structure capture(Region region, World world, String id) {
-        if (region == null || world == null || id == null || id.trim().isEmpty()) {
-            throw new IllegalArgumentException("Invalid capture parameters");
-        }
-
-        Structure structure = new Structure();
-        structure.setId(id.trim());
-        structure.setCreated(System.currentTimeMillis());
-
-        BlockVector3 min = region.getMinimumPoint();
-        BlockVector3 max = region.getMaximumPoint();
-
-        long totalBlocks = (long)(max.getX() - min.getX() + 1) *
-                (max.getY() - min.getY() + 1) *
-                (max.getZ() - min.getZ() + 1);
-
-        if (totalBlocks > 1000000) {
-            throw new IllegalArgumentException("Region too large: " + totalBlocks + " blocks");
-        }
+    private final StructureLayout layout;
 
-        int[] size = {
-                max.getX() - min.getX() + 1,
-                max.getY() - min.getY() + 1,
-                max.getZ() - min.getZ() + 1
-        };
-        structure.setSize(size);
-
-        try {
-            analyzeAndOptimize(region, world, structure, min);
-            captureBlockEntities(region, world, structure, min);
-            captureEntities(region, world, structure, min);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to capture structure: " + e.getMessage(), e);
-        }
-
-        return structure;
+    public StructureCapture(StructureLayout layout) {
+        this.layout = layout;
     }
 
-    private void analyzeAndOptimize(Region region, World world, Structure structure, BlockVector3 origin) {
-        Set<BlockVector3> processed = new HashSet<>();
-
-        for (BlockVector3 pos : region) {
-            if (processed.contains(pos)) continue;
-
-            Block block = world.getBlockAt(pos.getX(), pos.getY(), pos.getZ());
-            Material material = block.getType();
-
-            if (BLACKLISTED_MATERIALS.contains(material)) {
-                continue;
-            }
-
-            BlockRegion optimizedRegion = findOptimalRegion(pos, region, world, processed, origin);
-            if (optimizedRegion != null) {
-                structure.getRegions().add(optimizedRegion);
-            }
+    // Blocks the calling thread, so it keeps the old size limit; use captureAsync for anything large
+    public Structure capture(Region region, World world, String id) {
+        CaptureJob job = new CaptureJob(region, world, id, MAX_BLOCKING_CAPTURE_BLOCKS);
+        while (job.hasPendingChunks()) {
+            job.readChunk(job.visitNextChunk());
         }
+        return job.build();
     }
 
-    private BlockRegion findOptimalRegion(BlockVector3 start, Region region, World world,
-                                          Set<BlockVector3> processed, BlockVector3 origin) {
+    // Chunks are visited on the main thread within a per-tick time budget and handed to the worker one by one,
+    // so a snapshot is only held until its blocks are in the volume. Cancelling the future stops the job.
+    public CompletableFuture<Structure> captureAsync(Region region, World world, String id, Executor worker,
+                                                     IntConsumer progress) {
+        CaptureJob job;
+        synchronized (StructureCapture.class) {
+            job = new CaptureJob(region.clone(), world, id, asyncCaptureLimit() - reservedBlocks);
+            reservedBlocks += job.totalBlocks;
+        }
+        CompletableFuture<Structure> result = new CompletableFuture<>();
+        result.whenComplete((structure, error) -> release(job.totalBlocks));
+        AtomicInteger queued = new AtomicInteger();
+
+        new BukkitRunnable() {
+            private int reported;
+
+            @Override
+            public void run() {
+                if (result.isDone()) {
+                    cancel();
+                    return;
+                }
 
-        Block startBlock = world.getBlockAt(start.getX(), start.getY(), start.getZ());
-        Material material = startBlock.getType();
+                try {
+                    long deadline = System.nanoTime() + TICK_BUDGET_NANOS;
+                    for (int visited = 0; visited < MAX_CHUNKS_PER_TICK && job.hasPendingChunks()
+                            && queued.get() < MAX_QUEUED_CHUNKS && System.nanoTime() < deadline; visited++) {
+                        ChunkSnapshot snapshot = job.visitNextChunk();
+                        queued.incrementAndGet();
+                        worker.execute(() -> {
+                            try {
+                                if (!result.isDone()) job.readChunk(snapshot);
+                            } catch (RuntimeException e) {
+                                result.completeExceptionally(e);
+                            } finally {
+                                queued.decrementAndGet();
+                            }
+                        });
+                    }
 
-        BlockRegion fillRegion = tryFindFillRegion(start, region, world, material, processed, origin);
-        if (fillRegion != null) return fillRegion;
+                    int percent = job.getProgress();
+                    if (progress != null && percent / 10 > reported / 10) {
+                        reported = percent;
+                        progress.accept(percent);
+                    }
 
-        BlockRegion hollowRegion = tryFindHollowRegion(start, region, world, material, processed, origin);
-        if (hollowRegion != null) return hollowRegion;
+                    if (job.hasPendingChunks()) return;
+                    cancel();
+
+                    CompletableFuture.supplyAsync(() -> result.isDone() ? null : job.build(), worker)
+                            .whenComplete((structure, error) -> {
+                                if (error != null) {
+                                    result.completeExceptionally(error);
+                                } else if (structure != null) {
+                                    result.complete(structure);
+                                }
+                            });
+                } catch (Exception e) {
+                    cancel();
+                    result.completeExceptionally(e);
+                }
+            }
+        }.runTaskTimer(StructureLib.getPlugin(), 0L, 1L);
 
-        return createIndividualBlockRegion(start, startBlock, processed, origin);
+        return result;
     }
 
-    private BlockRegion tryFindFillRegion(BlockVector3 start, Region region, World world,
-                                          Material material, Set<BlockVector3> processed, BlockVector3 origin) {
-
-        BlockVector3 end = findMaximumCuboid(start, region, world, material);
-
-        int volume = calculateVolume(start, end);
-        if (volume < MIN_OPTIMIZATION_SIZE) return null;
-
-        markCuboidAsProcessed(start, end, processed);
+    private void analyzeAndOptimize(StructureVolume volume, Structure.Builder structure) {
+        if (layout == StructureLayout.SECTIONS) {
+            structure.addRegions(volume.toSections());
+            volume.compact();
+            structure.setVolume(volume);
+            return;
+        }
 
-        BlockRegion fillRegion = new BlockRegion("fill");
-        fillRegion.setStart(toRelativePosition(start, origin));
-        fillRegion.setEnd(toRelativePosition(end, origin));
-        fillRegion.setMaterial(material.toString());
+        RegionDecomposer decomposer = new RegionDecomposer(volume);
+        structure.addRegions(decomposer.decompose());
 
-        Block block = world.getBlockAt(start.getX(), start.getY(), start.getZ());
-        Map<String, Object> properties = extractBlockProperties(block);
-        if (properties != null && !properties.isEmpty()) {
-            fillRegion.setProperties(properties);
+        // The report re-encodes every region, so it is only built when someone is reading it
+        Logger logger = StructureLib.getPlugin().getLogger();
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Region decomposition: " + decomposer.report());
         }
 
-        return fillRegion;
+        volume.compact();
+        structure.setVolume(volume);
     }
 
-    private BlockRegion tryFindHollowRegion(BlockVector3 start, Region region, World world,
-                                            Material material, Set<BlockVector3> processed, BlockVector3 origin) {
-
-        BlockVector3 end = findHollowBox(start, region, world, material);
-        if (end == null) return null;
+    private void readSection(Region region, ChunkSnapshot snapshot, StructureVolume volume,
+                             Map<org.bukkit.block.data.BlockData, Integer> stateIds, BlockVector3 origin,
+                             BlockVector3 max, int sectionX, int sectionY, int sectionZ) {
+        // The loops are already clamped to the bounds, which is all a cuboid's contains() would test
+        boolean cuboid = region instanceof CuboidRegion;
+        for (int y = Math.max(sectionY, origin.getY()); y <= Math.min(sectionY + 15, max.getY()); y++) {
+            for (int z = Math.max(sectionZ, origin.getZ()); z <= Math.min(sectionZ + 15, max.getZ()); z++) {
+                for (int x = Math.max(sectionX, origin.getX()); x <= Math.min(sectionX + 15, max.getX()); x++) {
+                    if (!cuboid && !region.contains(BlockVector3.at(x, y, z))) continue;
 
-        int volume = calculateVolume(start, end);
-        int surfaceArea = calculateSurfaceArea(start, end);
+                    Material material = snapshot.getBlockType(x & 15, y, z & 15);
 
-        if (surfaceArea >= volume * 0.6) return null;
-
-        markHollowBoxAsProcessed(start, end, processed);
+                    if (BLACKLISTED_MATERIALS.contains(material)) {
+                        continue;
+                    }
 
-        BlockRegion hollowRegion = new BlockRegion("hollow");
-        hollowRegion.setStart(toRelativePosition(start, origin));
-        hollowRegion.setEnd(toRelativePosition(end, origin));
-        hollowRegion.setMaterial(material.toString());
+                    org.bukkit.block.data.BlockData data = snapshot.getBlockData(x & 15, y, z & 15);
+                    Integer paletteId = stateIds.get(data);
+                    if (paletteId == null) {
+                        paletteId = volume.idFor(material.toString(), extractBlockProperties(data));
+                        stateIds.put(data, paletteId);
+                    }
 
-        Block block = world.getBlockAt(start.getX(), start.getY(), start.getZ());
-        Map<String, Object> properties = extractBlockProperties(block);
-        if (properties != null && !properties.isEmpty()) {
-            hollowRegion.setProperties(properties);
+                    volume.set(x - origin.getX(), y - origin.getY(), z - origin.getZ(), paletteId);
+                }
+            }
         }
-
-        return hollowRegion;
     }
 
-    private BlockRegion createIndividualBlockRegion(BlockVector3 pos, Block block,
-                                                    Set<BlockVector3> processed, BlockVector3 origin) {
-
-        processed.add(pos);
-
-        BlockRegion individual = new BlockRegion("individual");
-        List<BlockData> blocks = new ArrayList<>();
-
-        BlockData blockData = new BlockData(
-                toRelativePosition(pos, origin),
-                block.getType().toString()
-        );
-
-        Map<String, Object> properties = extractBlockProperties(block);
-        if (properties != null && !properties.isEmpty()) {
-            blockData.setProperties(properties);
-        }
+    private static long asyncCaptureLimit() {
+        return Math.min(MAX_CAPTURE_BLOCKS, Runtime.getRuntime().maxMemory() / 4 / CAPTURE_BYTES_PER_BLOCK);
+    }
 
-        blocks.add(blockData);
-        individual.setBlocks(blocks);
+    private static synchronized void release(long blocks) {
+        reservedBlocks -= blocks;
+    }
 
-        return individual;
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
     }
 
-    private void captureBlockEntities(Region region, World world, Structure structure, BlockVector3 origin) {
-        for (BlockVector3 pos : region) {
+    // Only the chunk's tile entities are looked at, so the cost follows the number of containers, not the volume
+    private void captureBlockEntities(Region region, Chunk chunk, Structure.Builder structure, BlockVector3 origin) {
+        for (BlockState state : chunk.getTileEntities()) {
+            BlockVector3 pos = BlockVector3.at(state.getX(), state.getY(), state.getZ());
             try {
-                Block block = world.getBlockAt(pos.getX(), pos.getY(), pos.getZ());
-
-                if (BLACKLISTED_MATERIALS.contains(block.getType())) {
+                if (!region.contains(pos) || BLACKLISTED_MATERIALS.contains(state.getType())) {
                     continue;
                 }
 
-                if (block.getState() instanceof Container ||
-                        block.getState() instanceof Furnace ||
-                        block.getState() instanceof CreatureSpawner) {
-
+                if (state instanceof Container || state instanceof Furnace || state instanceof CreatureSpawner) {
                     BlockEntity blockEntity = new BlockEntity(
                             toRelativePosition(pos, origin),
-                            block.getType().toString()
+                            state.getType().toString()
                     );
 
-                    extractBlockEntityData(block.getState(), blockEntity.getData());
+                    extractBlockEntityData(state, blockEntity.getData());
 
-                    structure.getBlockEntities().add(blockEntity);
+                    structure.addBlockEntity(blockEntity);
                 }
             } catch (Exception e) {
-                System.err.println("Failed to capture block entity at " + pos + ": " + e.getMessage());
+                StructureLib.getPlugin().getLogger().warning("Failed to capture block entity at " + pos + ": " + e.getMessage());
             }
         }
     }
 
-    private void captureEntities(Region region, World world, Structure structure, BlockVector3 origin) {
-        for (Entity entity : world.getEntities()) {
+    // Reads the chunk's own entity list, so the cost follows the captured area rather than the world's population
+    private void captureEntities(Region region, Chunk chunk, Structure.Builder structure, BlockVector3 origin, Set<UUID> seen) {
+        for (Entity entity : chunk.getEntities()) {
             try {
                 Location loc = entity.getLocation();
                 BlockVector3 pos = BlockVector3.at(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
 
-                if (region.contains(pos) && isValidEntityType(entity)) {
+                if (region.contains(pos) && isValidEntityType(entity) && seen.add(entity.getUniqueId())) {
                     double[] relativePos = {
                             loc.getX() - origin.getX(),
                             loc.getY() - origin.getY(),
@@ -221,10 +237,10 @@ class StructureCapture {
                     EntityData entityData = new EntityData(relativePos, entity.getType().toString());
                     extractEntityData(entity, entityData.getData());
 
-                    structure.getEntities().add(entityData);
+                    structure.addEntity(entityData);
                 }
             } catch (Exception e) {
-                System.err.println("Failed to capture entity " + entity.getType() + ": " + e.getMessage());
+                StructureLib.getPlugin().getLogger().warning("Failed to capture entity " + entity.getType() + ": " + e.getMessage());
             }
         }
     }
@@ -239,92 +255,6 @@ class StructureCapture {
                 !entity.isDead();
     }
 
-    private BlockVector3 findMaximumCuboid(BlockVector3 start, Region region, World world, Material material) {
-        int maxX = start.getX();
-        int maxY = start.getY();
-        int maxZ = start.getZ();
-
-        expandX: while (maxX + 1 <= region.getMaximumPoint().getX()) {
-            for (int y = start.getY(); y <= maxY; y++) {
-                for (int z = start.getZ(); z <= maxZ; z++) {
-                    Block block = world.getBlockAt(maxX + 1, y, z);
-                    if (block.getType() != material) {
-                        break expandX;
-                    }
-                }
-            }
-            maxX++;
-        }
-
-        expandY: while (maxY + 1 <= region.getMaximumPoint().getY()) {
-            for (int x = start.getX(); x <= maxX; x++) {
-                for (int z = start.getZ(); z <= maxZ; z++) {
-                    Block block = world.getBlockAt(x, maxY + 1, z);
-                    if (block.getType() != material) {
-                        break expandY;
-                    }
-                }
-            }
-            maxY++;
-        }
-
-        expandZ: while (maxZ + 1 <= region.getMaximumPoint().getZ()) {
-            for (int x = start.getX(); x <= maxX; x++) {
-                for (int y = start.getY(); y <= maxY; y++) {
-                    Block block = world.getBlockAt(x, y, maxZ + 1);
-                    if (block.getType() != material) {
-                        break expandZ;
-                    }
-                }
-            }
-            maxZ++;
-        }
-
-        return BlockVector3.at(maxX, maxY, maxZ);
-    }
-
-    private BlockVector3 findHollowBox(BlockVector3 start, Region region, World world, Material material) {
-        return null;
-    }
-
-    private int calculateVolume(BlockVector3 start, BlockVector3 end) {
-        return (end.getX() - start.getX() + 1) *
-                (end.getY() - start.getY() + 1) *
-                (end.getZ() - start.getZ() + 1);
-    }
-
-    private int calculateSurfaceArea(BlockVector3 start, BlockVector3 end) {
-        int width = end.getX() - start.getX() + 1;
-        int height = end.getY() - start.getY() + 1;
-        int depth = end.getZ() - start.getZ() + 1;
-
-        return 2 * (width * height + width * depth + height * depth);
-    }
-
-    private void markCuboidAsProcessed(BlockVector3 start, BlockVector3 end, Set<BlockVector3> processed) {
-        for (int x = start.getX(); x <= end.getX(); x++) {
-            for (int y = start.getY(); y <= end.getY(); y++) {
-                for (int z = start.getZ(); z <= end.getZ(); z++) {
-                    processed.add(BlockVector3.at(x, y, z));
-                }
-            }
-        }
-    }
-
-    private void markHollowBoxAsProcessed(BlockVector3 start, BlockVector3 end, Set<BlockVector3> processed) {
-        for (int x = start.getX(); x <= end.getX(); x++) {
-            for (int y = start.getY(); y <= end.getY(); y++) {
-                for (int z = start.getZ(); z <= end.getZ(); z++) {
-                    if (x == start.getX() || x == end.getX() ||
-                            y == start.getY() || y == end.getY() ||
-                            z == start.getZ() || z == end.getZ()) {
-                        processed.add(BlockVector3.at(x, y, z));
-                    }
-                }
-            }
-        }
-    }
-
     private int[] toRelativePosition(BlockVector3 pos, BlockVector3 origin) {
         return new int[] {
                 pos.getX() - origin.getX(),
@@ -333,9 +263,8 @@ class StructureCapture {
         };
     }
 
-    private Map<String, Object> extractBlockProperties(Block block) {
+    private Map<String, Object> extractBlockProperties(org.bukkit.block.data.BlockData data) {
         Map<String, Object> properties = new HashMap<>();
-        org.bukkit.block.data.BlockData data = block.getBlockData();
 
         try {
             if (data instanceof Directional) {
@@ -378,7 +307,7 @@ class StructureCapture {
             }
 
         } catch (Exception e) {
-            StructureLib.getPlugin().getLogger().warning("Failed to extract properties for " + block.getType() + ": " + e.getMessage());
+            StructureLib.getPlugin().getLogger().warning("Failed to extract properties for " + data.getMaterial() + ": " + e.getMessage());
         }
 
         return properties.isEmpty() ? null : properties;
@@ -441,4 +370,94 @@ class StructureCapture {
             // Continue if data extraction fails
         }
     }
+
+    // One capture in progress: the world is only touched on the main thread, snapshots are read on the worker
+    private class CaptureJob {
+        private final Region region;
+        private final World world;
+        private final BlockVector3 min;
+        private final BlockVector3 max;
+        private final Structure.Builder structure;
+        private final StructureVolume volume;
+        private final Map<org.bukkit.block.data.BlockData, Integer> stateIds = new HashMap<>();
+        private final Deque<Long> pendingChunks = new ArrayDeque<>();
+        private final int totalChunks;
+        private final long totalBlocks;
+
+        // Entities can wander into a chunk that is visited later; each one is only captured once
+        private final Set<UUID> capturedEntities = new HashSet<>();
+
+        CaptureJob(Region region, World world, String id, long maxBlocks) {
+            if (region == null || world == null || id == null || id.trim().isEmpty()) {
+                throw new IllegalArgumentException("Invalid capture parameters");
+            }
+
+            this.region = region;
+            this.world = world;
+            this.min = region.getMinimumPoint();
+            this.max = region.getMaximumPoint();
+
+            this.totalBlocks = (long)(max.getX() - min.getX() + 1) *
+                    (max.getY() - min.getY() + 1) *
+                    (max.getZ() - min.getZ() + 1);
+
+            if (totalBlocks > maxBlocks) {
+                throw new IllegalArgumentException("Region too large: " + totalBlocks + " blocks (limit " + maxBlocks + ")");
+            }
+
+            int[] size = {
+                    max.getX() - min.getX() + 1,
+                    max.getY() - min.getY() + 1,
+                    max.getZ() - min.getZ() + 1
+            };
+            this.structure = Structure.builder()
+                    .setId(id.trim())
+                    .setCreated(System.currentTimeMillis())
+                    .setSize(size);
+            this.volume = new StructureVolume(size[0], size[1], size[2]);
+
+            for (int chunkX = min.getX() >> 4; chunkX <= max.getX() >> 4; chunkX++) {
+                for (int chunkZ = min.getZ() >> 4; chunkZ <= max.getZ() >> 4; chunkZ++) {
+                    pendingChunks.add(chunkKey(chunkX, chunkZ));
+                }
+            }
+            this.totalChunks = pendingChunks.size();
+        }
+
+        boolean hasPendingChunks() {
+            return !pendingChunks.isEmpty();
+        }
+
+        int getProgress() {
+            return (int) ((totalChunks - pendingChunks.size()) * 100L / totalChunks);
+        }
+
+        // Main thread only; block entities and entities are read in the same chunk visit
+        ChunkSnapshot visitNextChunk() {
+            long key = pendingChunks.poll();
+            Chunk chunk = world.getChunkAt((int) (key >> 32), (int) key);
+            ChunkSnapshot snapshot = chunk.getChunkSnapshot(false, false, false);
+            captureBlockEntities(region, chunk, structure, min);
+            captureEntities(region, chunk, structure, min, capturedEntities);
+            return snapshot;
+        }
+
+        // Reads every block of one chunk column once, a section at a time; properties are only extracted for new block states
+        void readChunk(ChunkSnapshot snapshot) {
+            int sectionX = snapshot.getX() << 4;
+            int sectionZ = snapshot.getZ() << 4;
+            for (int sectionY = min.getY() & ~15; sectionY <= max.getY(); sectionY += 16) {
+                readSection(region, snapshot, volume, stateIds, min, max, sectionX, sectionY, sectionZ);
+            }
+        }
+
+        Structure build() {
+            try {
+                analyzeAndOptimize(volume, structure);
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to capture structure: " + e.getMessage(), e);
+            }
+            return structure.build();
+        }
+    }
 }
\ No newline at end of file
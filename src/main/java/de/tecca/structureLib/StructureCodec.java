@@ -0,0 +1,114 @@
+package de.tecca.structureLib;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+enum StructureCodec {
+    NONE(0, "none") {
+        @Override
+        public byte[] compress(byte[] data) {
+            return data;
+        }
+
+        @Override
+        public byte[] decompress(ByteBuffer source, int length) throws IOException {
+            if (source.remaining() < length) {
+                throw new IOException("Truncated structure payload");
+            }
+            byte[] data = new byte[length];
+            source.get(data);
+            return data;
+        }
+    },
+    DEFLATE(1, "deflate") {
+        @Override
+        public byte[] compress(byte[] data) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+                byte[] chunk = new byte[8192];
+                while (!deflater.finished()) {
+                    int written = deflater.deflate(chunk);
+                    out.write(chunk, 0, written);
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public byte[] decompress(ByteBuffer source, int length) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(source);
+                byte[] data = new byte[length];
+                int offset = 0;
+                while (offset < length) {
+                    int read = inflater.inflate(data, offset, length - offset);
+                    if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Truncated structure payload");
+                    }
+                    offset += read;
+                }
+                return data;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt deflate payload", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    },
+    LZ4(2, "lz4") {
+        @Override
+        public byte[] compress(byte[] data) {
+            return Lz4Block.compress(data);
+        }
+
+        @Override
+        public byte[] decompress(ByteBuffer source, int length) throws IOException {
+            return Lz4Block.decompress(source, length);
+        }
+    };
+
+    private final int id;
+    private final String name;
+
+    StructureCodec(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public abstract byte[] compress(byte[] data);
+
+    public abstract byte[] decompress(ByteBuffer source, int length) throws IOException;
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static StructureCodec byId(int id) {
+        for (StructureCodec codec : values()) {
+            if (codec.id == id) return codec;
+        }
+        return null;
+    }
+
+    public static StructureCodec byName(String name) {
+        for (StructureCodec codec : values()) {
+            if (codec.name.equalsIgnoreCase(name)) return codec;
+        }
+        return null;
+    }
+}
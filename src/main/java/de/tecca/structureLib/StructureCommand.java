@@ -20,7 +20,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 class StructureCommand implements CommandExecutor, TabCompleter {
@@ -28,6 +32,9 @@ class StructureCommand implements CommandExecutor, TabCompleter {
     private final StructureAPI api;
     private final StructureMetadataGUI gui;
 
+    // At most one capture per player, so /struct cancel needs no arguments
+    private final Map<UUID, CompletableFuture<Structure>> activeCaptures = new HashMap<>();
+
     public StructureCommand(StructureLib plugin) {
         this.plugin = plugin;
         this.api = plugin.getStructureAPI();
@@ -42,7 +49,7 @@ class StructureCommand implements CommandExecutor, TabCompleter {
         }
 
         if (args.length == 0) {
-            player.sendMessage("§cUsage: /struct <save|place|info|edit|list|enable-spawning> [args...]");
+            player.sendMessage("§cUsage: /struct <save|place|info|edit|list|enable-spawning|recompress|cancel> [args...]");
             return true;
         }
 
@@ -59,8 +66,12 @@ class StructureCommand implements CommandExecutor, TabCompleter {
                 return handleList(player, args);
             case "enable-spawning":
                 return handleEnableSpawning(player, args);
+            case "recompress":
+                return handleRecompress(player, args);
+            case "cancel":
+                return handleCancel(player);
             default:
-                player.sendMessage("§cUsage: /struct <save|place|info|edit|list|enable-spawning> [args...]");
+                player.sendMessage("§cUsage: /struct <save|place|info|edit|list|enable-spawning|recompress|cancel> [args...]");
                 return true;
         }
     }
@@ -73,6 +84,11 @@ class StructureCommand implements CommandExecutor, TabCompleter {
 
         String id = args[1];
 
+        if (activeCaptures.containsKey(player.getUniqueId())) {
+            player.sendMessage("§cYou already have a capture running. Use /struct cancel to stop it.");
+            return true;
+        }
+
         try {
             BukkitPlayer bukkitPlayer = BukkitAdapter.adapt(player);
             LocalSession session = WorldEdit.getInstance().getSessionManager().get(bukkitPlayer);
@@ -88,28 +104,30 @@ class StructureCommand implements CommandExecutor, TabCompleter {
             com.sk89q.worldedit.world.World weWorld = bukkitPlayer.getWorld();
             World bukkitWorld = BukkitAdapter.adapt(weWorld);
 
-            Structure structure = api.captureStructure(selection, bukkitWorld, id);
-            structure.setAuthor(player.getName());
-
-            File file = new File(plugin.getStructuresFolder(), id + ".json");
-            api.saveStructure(structure, file);
-
-            int[] size = structure.getSize();
-            int totalBlocks = size[0] * size[1] * size[2];
-            int regionCount = structure.getRegions().size();
-
-            player.sendMessage("§a✓ Structure saved:");
-            player.sendMessage("§7  ID: §f" + id);
-            player.sendMessage("§7  Size: §f" + size[0] + "x" + size[1] + "x" + size[2]);
-            player.sendMessage("§7  Blocks: §f" + totalBlocks);
-            player.sendMessage("§7  Regions: §f" + regionCount);
-
-            StructureMetadata metadata = structure.getMetadata();
-            if (metadata != null) {
-                player.sendMessage("§7  Source Dimension: §f" + metadata.getSourceDimension());
-                player.sendMessage("§7  Source Biome: §f" + metadata.getSourceBiome());
-                player.sendMessage("§a  Use '/struct edit " + id + "' to configure spawn settings");
-            }
+            String author = player.getName();
+            File file = api.getStructureFile(id);
+
+            UUID playerId = player.getUniqueId();
+            CompletableFuture<Structure> capture = api.captureStructureAsync(selection, bukkitWorld, id,
+                    percent -> player.sendMessage("§7Capturing " + id + "... " + percent + "%"));
+            activeCaptures.put(playerId, capture);
+
+            capture.thenCompose(captured -> {
+                        Structure structure = captured.toBuilder().setAuthor(author).build();
+                        return api.saveStructureAsync(structure, file).thenApply(ignored -> structure);
+                    })
+                    .whenComplete((structure, error) ->
+                            Bukkit.getScheduler().runTask(plugin, () -> {
+                                activeCaptures.remove(playerId, capture);
+                                if (capture.isCancelled()) return;
+
+                                if (error != null) {
+                                    player.sendMessage("§cError while saving: " + StructureAPI.describeError(error));
+                                    error.printStackTrace();
+                                } else {
+                                    sendSaveSummary(player, id, structure);
+                                }
+                            }));
 
         } catch (IncompleteRegionException e) {
             player.sendMessage("§cPlease select an area with //pos1 and //pos2 first!");
@@ -121,6 +139,36 @@ class StructureCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
+    private boolean handleCancel(Player player) {
+        CompletableFuture<Structure> capture = activeCaptures.remove(player.getUniqueId());
+        if (capture == null || !capture.cancel(false)) {
+            player.sendMessage("§cYou have no capture running!");
+            return true;
+        }
+
+        player.sendMessage("§eCapture cancelled.");
+        return true;
+    }
+
+    private void sendSaveSummary(Player player, String id, Structure structure) {
+        int[] size = structure.getSize();
+        StructureStats stats = structure.getStats();
+        int regionCount = structure.getRegions().size();
+
+        player.sendMessage("§a✓ Structure saved:");
+        player.sendMessage("§7  ID: §f" + id);
+        player.sendMessage("§7  Size: §f" + size[0] + "x" + size[1] + "x" + size[2]);
+        player.sendMessage("§7  Blocks: §f" + stats.getNonAirBlocks());
+        player.sendMessage("§7  Regions: §f" + regionCount);
+
+        StructureMetadata metadata = structure.getMetadata();
+        if (metadata != null) {
+            player.sendMessage("§7  Source Dimension: §f" + metadata.getSourceDimension());
+            player.sendMessage("§7  Source Biome: §f" + metadata.getSourceBiome());
+            player.sendMessage("§a  Use '/struct edit " + id + "' to configure spawn settings");
+        }
+    }
+
     private boolean handlePlace(Player player, String[] args) {
         if (args.length < 2) {
             player.sendMessage("§cUsage: /struct place <id> [rotation|random]");
@@ -128,7 +176,7 @@ class StructureCommand implements CommandExecutor, TabCompleter {
         }
 
         String id = args[1];
-        File file = new File(plugin.getStructuresFolder(), id + ".json");
+        File file = api.getStructureFile(id);
 
         if (!file.exists()) {
             player.sendMessage("§cStructure '" + id + "' not found!");
@@ -158,7 +206,7 @@ class StructureCommand implements CommandExecutor, TabCompleter {
         }
 
         try {
-            Structure structure = api.loadStructure(file);
+            Structure structure = api.getRegistry().get(id);
 
             Location location = player.getLocation().getBlock().getLocation();
 
@@ -199,7 +247,7 @@ class StructureCommand implements CommandExecutor, TabCompleter {
         }
 
         String structureId = args[1];
-        File structureFile = new File(plugin.getStructuresFolder(), structureId + ".json");
+        File structureFile = api.getStructureFile(structureId);
 
         if (!structureFile.exists()) {
             player.sendMessage("§cStructure '" + structureId + "' not found!");
@@ -207,16 +255,18 @@ class StructureCommand implements CommandExecutor, TabCompleter {
         }
 
         try {
-            Structure structure = api.loadStructure(structureFile);
+            Structure structure = api.getRegistry().get(structureId);
             StructureMetadata metadata = structure.getMetadata();
 
             player.sendMessage("§6=== Structure Info: " + structureId + " ===");
             player.sendMessage("§7Author: §f" + structure.getAuthor());
             player.sendMessage("§7Created: §f" + new Date(structure.getCreated()));
             player.sendMessage("§7Size: §f" + Arrays.toString(structure.getSize()));
+            StructureStats stats = structure.getStats();
             player.sendMessage("§7Regions: §f" + structure.getRegions().size());
-            player.sendMessage("§7Block Entities: §f" + structure.getBlockEntities().size());
-            player.sendMessage("§7Entities: §f" + structure.getEntities().size());
+            player.sendMessage("§7Blocks: §f" + stats.getNonAirBlocks() + " §7(" + stats.getMaterials().size() + " materials, footprint " + stats.getFootprintArea() + " columns)");
+            player.sendMessage("§7Block Entities: §f" + stats.getBlockEntities());
+            player.sendMessage("§7Entities: §f" + stats.getEntities());
             player.sendMessage("");
 
             if (metadata != null) {
@@ -251,7 +301,7 @@ class StructureCommand implements CommandExecutor, TabCompleter {
         }
 
         String structureId = args[1];
-        File structureFile = new File(plugin.getStructuresFolder(), structureId + ".json");
+        File structureFile = api.getStructureFile(structureId);
 
         if (!structureFile.exists()) {
             player.sendMessage("§cStructure '" + structureId + "' not found!");
@@ -266,9 +316,9 @@ class StructureCommand implements CommandExecutor, TabCompleter {
         String filterTag = args.length > 1 ? args[1] : null;
         String filterDimension = args.length > 2 ? args[2] : null;
 
-        List<Structure> structures = getAllStructures();
+        List<StructureIndex.Entry> structures = api.getIndex().getEntries();
 
-        List<Structure> filtered = structures.stream()
+        List<StructureIndex.Entry> filtered = structures.stream()
                 .filter(s -> s.getMetadata() != null)
                 .filter(s -> filterTag == null || s.getMetadata().getTags().contains(filterTag))
                 .filter(s -> filterDimension == null || s.getMetadata().getAllowedDimensions().contains(filterDimension))
@@ -284,11 +334,11 @@ class StructureCommand implements CommandExecutor, TabCompleter {
         if (filtered.isEmpty()) {
             player.sendMessage("§7No structures found with the specified filters");
         } else {
-            for (Structure structure : filtered) {
+            for (StructureIndex.Entry structure : filtered) {
                 StructureMetadata meta = structure.getMetadata();
                 String spawning = meta.isNaturalSpawning() ? " §a[Natural]" : "";
                 String tags = meta.getTags().isEmpty() ? "" : " §7(" + String.join(", ", meta.getTags()) + ")";
-                player.sendMessage("§a" + structure.getId() + spawning + tags);
+                player.sendMessage("§a" + structure.getId() + spawning + tags + " §8" + structure.getStats().getNonAirBlocks() + " blocks");
             }
             player.sendMessage("§7Total: " + filtered.size() + " structures");
         }
@@ -303,7 +353,7 @@ class StructureCommand implements CommandExecutor, TabCompleter {
         }
 
         String structureId = args[1];
-        File structureFile = new File(plugin.getStructuresFolder(), structureId + ".json");
+        File structureFile = api.getStructureFile(structureId);
 
         if (!structureFile.exists()) {
             player.sendMessage("§cStructure '" + structureId + "' not found!");
@@ -311,21 +361,22 @@ class StructureCommand implements CommandExecutor, TabCompleter {
         }
 
         try {
-            Structure structure = api.loadStructure(structureFile);
-            StructureMetadata metadata = structure.getMetadata();
-
-            if (metadata == null) {
-                metadata = new StructureMetadata();
-                structure.setMetadata(metadata);
-            }
+            Structure cached = api.getRegistry().get(structureId);
+            StructureMetadata metadata = cached.getMetadata() != null ? cached.getMetadata() : new StructureMetadata();
 
             metadata.setNaturalSpawning(true);
-            api.saveStructure(structure, structureFile);
-
+            Structure structure = cached.toBuilder().setMetadata(metadata).build();
             plugin.getNaturalSpawner().registerStructure(structureId, metadata);
 
-            player.sendMessage("§aNatural spawning enabled for: " + structureId);
-            player.sendMessage("§7Use §e/struct edit " + structureId + "§7 to configure spawn settings");
+            api.saveStructureAsync(structure, structureFile).whenComplete((ignored, error) ->
+                    Bukkit.getScheduler().runTask(plugin, () -> {
+                        if (error != null) {
+                            player.sendMessage("§cError updating structure: " + StructureAPI.describeError(error));
+                        } else {
+                            player.sendMessage("§aNatural spawning enabled for: " + structureId);
+                            player.sendMessage("§7Use §e/struct edit " + structureId + "§7 to configure spawn settings");
+                        }
+                    }));
 
         } catch (IOException e) {
             player.sendMessage("§cError updating structure: " + e.getMessage());
@@ -334,22 +385,42 @@ class StructureCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
-    private List<Structure> getAllStructures() {
-        List<Structure> structures = new ArrayList<>();
-        File[] files = plugin.getStructuresFolder().listFiles((dir, name) -> name.endsWith(".json"));
+    private boolean handleRecompress(Player player, String[] args) {
+        if (!player.hasPermission("structurelib.recompress")) {
+            player.sendMessage("§cYou don't have permission to recompress structures!");
+            return true;
+        }
 
-        if (files != null) {
-            for (File file : files) {
-                try {
-                    Structure structure = api.loadStructure(file);
-                    structures.add(structure);
-                } catch (IOException e) {
-                    // Skip invalid files
-                }
+        StructureCodec codec = api.getCodec();
+        if (args.length > 1) {
+            codec = StructureCodec.byName(args[1]);
+            if (codec == null) {
+                player.sendMessage("§cUnknown codec. Use none, deflate or lz4!");
+                return true;
             }
         }
 
-        return structures;
+        String codecName = codec.getName();
+        player.sendMessage("§7Recompressing structure library with " + codecName + " in the background...");
+
+        api.recompressLibrary(codec).whenComplete((result, error) ->
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    if (error != null) {
+                        player.sendMessage("§cRecompression failed: " + StructureAPI.describeError(error));
+                        return;
+                    }
+
+                    player.sendMessage("§a✓ Recompressed " + result.getFiles() + " structures with " + codecName);
+                    player.sendMessage("§7  Size: §f" + result.getBytesBefore() / 1024 + " KiB §7→ §f" + result.getBytesAfter() / 1024 + " KiB");
+                    if (result.getBlobsRemoved() > 0) {
+                        player.sendMessage("§7  Unused region blobs removed: §f" + result.getBlobsRemoved());
+                    }
+                    if (result.getFailed() > 0) {
+                        player.sendMessage("§c  Failed: " + result.getFailed() + " (see console)");
+                    }
+                }));
+
+        return true;
     }
 
     @Override
@@ -359,7 +430,7 @@ class StructureCommand implements CommandExecutor, TabCompleter {
         }
 
         if (args.length == 1) {
-            List<String> commands = Arrays.asList("save", "place", "info", "edit", "list", "enable-spawning");
+            List<String> commands = Arrays.asList("save", "place", "info", "edit", "list", "enable-spawning", "recompress", "cancel");
             return commands.stream()
                     .filter(command -> command.toLowerCase().startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
@@ -369,17 +440,21 @@ class StructureCommand implements CommandExecutor, TabCompleter {
             String subCommand = args[0].toLowerCase();
             if (subCommand.equals("place") || subCommand.equals("info") ||
                     subCommand.equals("edit") || subCommand.equals("enable-spawning")) {
-                File[] files = plugin.getStructuresFolder().listFiles((dir, name) -> name.endsWith(".json"));
-                if (files != null) {
-                    return Arrays.stream(files)
-                            .map(f -> f.getName().replace(".json", ""))
-                            .filter(name -> name.toLowerCase().startsWith(args[1].toLowerCase()))
-                            .collect(Collectors.toList());
-                }
+                return Arrays.stream(api.listStructureFiles())
+                        .map(api::getStructureId)
+                        .filter(name -> name.toLowerCase().startsWith(args[1].toLowerCase()))
+                        .collect(Collectors.toList());
+            }
+
+            if (subCommand.equals("recompress")) {
+                return Arrays.stream(StructureCodec.values())
+                        .map(StructureCodec::getName)
+                        .filter(name -> name.startsWith(args[1].toLowerCase()))
+                        .collect(Collectors.toList());
             }
 
             if (subCommand.equals("list")) {
-                List<String> tags = getAllStructures().stream()
+                List<String> tags = api.getIndex().getEntries().stream()
                         .filter(s -> s.getMetadata() != null)
                         .flatMap(s -> s.getMetadata().getTags().stream())
                         .distinct()
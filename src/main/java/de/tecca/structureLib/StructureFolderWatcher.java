@@ -0,0 +1,133 @@
+package de.tecca.structureLib;
+
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+class StructureFolderWatcher implements Runnable {
+    private static final long DEBOUNCE_MILLIS = 500;
+
+    private final StructureLib plugin;
+    private final StructureAPI api;
+    private final Path folder;
+    private WatchService watchService;
+    private Thread thread;
+
+    public StructureFolderWatcher(StructureLib plugin) {
+        this.plugin = plugin;
+        this.api = plugin.getStructureAPI();
+        this.folder = plugin.getStructuresFolder().toPath();
+    }
+
+    public void start() throws IOException {
+        watchService = folder.getFileSystem().newWatchService();
+        folder.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+
+        thread = new Thread(this, "StructureLib-Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        if (watchService == null) return;
+
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Closing only fails if the service is already broken
+        }
+        thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        Set<String> pending = new HashSet<>();
+
+        try {
+            while (true) {
+                // Block until something happens, then keep collecting until the folder is quiet
+                WatchKey key = pending.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (key == null) {
+                    reload(pending);
+                    pending = new HashSet<>();
+                    continue;
+                }
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        for (File file : api.listStructureFiles()) {
+                            pending.add(api.getStructureId(file));
+                        }
+                        continue;
+                    }
+
+                    String name = event.context().toString();
+                    if (name.endsWith(StructureBinaryFormat.EXTENSION) || name.endsWith(".json")) {
+                        pending.add(api.getStructureId(new File(name)));
+                    }
+                }
+
+                if (!key.reset()) {
+                    plugin.getLogger().warning("Structures folder is no longer accessible, hot reload stopped");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Plugin is shutting down
+        }
+    }
+
+    private void reload(Set<String> ids) {
+        int changed = 0;
+        for (String id : ids) {
+            // Skip the plugin's own saves and recompressions; they have updated the index by the time events settle
+            File file = api.getStructureFile(id);
+            StructureIndex.Entry indexed = api.getIndex().get(id);
+            if (file.exists() ? indexed != null && indexed.matches(file) : indexed == null) continue;
+
+            api.getRegistry().invalidate(id);
+            changed++;
+
+            StructureMetadata metadata = null;
+            if (file.exists()) {
+                try {
+                    Structure structure = api.getRegistry().get(id);
+                    api.getIndex().update(id, structure, file);
+                    metadata = structure.getMetadata();
+                } catch (IOException | RuntimeException e) {
+                    // Usually a file that is still being copied; its next modify event retries
+                    plugin.getLogger().warning("Failed to reload structure '" + id + "': " + e.getMessage());
+                    continue;
+                }
+            } else {
+                api.getIndex().remove(id);
+            }
+
+            if (!plugin.isEnabled()) return;
+
+            StructureMetadata reloaded = metadata;
+            Bukkit.getScheduler().runTask(plugin, () -> plugin.getNaturalSpawner().updateStructure(id, reloaded));
+        }
+
+        if (changed == 0) return;
+
+        api.getIndex().saveIfDirty();
+        plugin.getLogger().info("Reloaded " + changed + " changed structure file(s)");
+    }
+}
@@ -0,0 +1,222 @@
+package de.tecca.structureLib;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+class StructureIndex {
+    private static final int VERSION = 3;
+
+    private final StructureAPI api;
+    private final File indexFile;
+    private final Gson gson;
+    private final Map<String, Entry> entries;
+    private boolean dirty;
+
+    public StructureIndex(StructureAPI api, File indexFile) {
+        this.api = api;
+        this.indexFile = indexFile;
+        this.gson = new Gson();
+        this.entries = new TreeMap<>();
+    }
+
+    public synchronized void load() {
+        entries.clear();
+        if (!indexFile.exists()) return;
+
+        try (Reader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            IndexFile stored = gson.fromJson(reader, IndexFile.class);
+            if (stored != null && stored.version == VERSION && stored.entries != null) {
+                for (Entry entry : stored.entries) {
+                    entries.put(entry.id, entry);
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            // A broken index is simply rebuilt from the structure files
+            StructureLib.getPlugin().getLogger().warning("Discarding unreadable structure index: " + e.getMessage());
+            entries.clear();
+        }
+    }
+
+    // Re-reads only files whose modification time or length changed since they were indexed
+    public synchronized int refresh() {
+        Set<String> seen = new HashSet<>();
+        List<File> stale = new ArrayList<>();
+
+        for (File file : api.listStructureFiles()) {
+            String id = api.getStructureId(file);
+            if (!api.getStructureFile(id).equals(file)) continue;
+            seen.add(id);
+
+            Entry entry = entries.get(id);
+            if (entry == null || !entry.matches(file)) {
+                stale.add(file);
+            }
+        }
+
+        int reindexed = stale.isEmpty() ? 0 : reindex(stale);
+
+        if (entries.keySet().retainAll(seen)) {
+            dirty = true;
+        }
+
+        saveIfDirty();
+        return reindexed;
+    }
+
+    // Parses on a bounded pool, then applies the results on the calling thread
+    private int reindex(List<File> files) {
+        Logger logger = StructureLib.getPlugin().getLogger();
+        int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        int progressStep = Math.max(1, files.size() / 10);
+        AtomicInteger parsed = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "StructureLib-Indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        logger.info("Indexing " + files.size() + " structure files on " + threads + " threads...");
+
+        int reindexed = 0;
+        try {
+            List<Future<Entry>> results = new ArrayList<>(files.size());
+            for (File file : files) {
+                results.add(pool.submit(() -> {
+                    try {
+                        return new Entry(api.getStructureId(file), api.loadStructure(file), file);
+                    } finally {
+                        int done = parsed.incrementAndGet();
+                        if (files.size() >= 100 && done % progressStep == 0) {
+                            logger.info("Indexed " + done + "/" + files.size() + " structure files");
+                        }
+                    }
+                }));
+            }
+
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                try {
+                    Entry entry = results.get(i).get();
+                    entries.put(entry.id, entry);
+                    dirty = true;
+                    reindexed++;
+                } catch (ExecutionException e) {
+                    logger.warning("Failed to index structure " + file.getName() + ": " + e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return reindexed;
+    }
+
+    public synchronized void update(String id, Structure structure, File file) {
+        entries.put(id, new Entry(id, structure, file));
+        dirty = true;
+    }
+
+    public synchronized void remove(String id) {
+        if (entries.remove(id) != null) {
+            dirty = true;
+        }
+    }
+
+    public synchronized Entry get(String id) {
+        return entries.get(id);
+    }
+
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public synchronized void saveIfDirty() {
+        if (!dirty) return;
+
+        IndexFile stored = new IndexFile();
+        stored.version = VERSION;
+        stored.entries = new ArrayList<>(entries.values());
+
+        File temp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                gson.toJson(stored, writer);
+            }
+            try {
+                Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            StructureLib.getPlugin().getLogger().warning("Failed to save structure index: " + e.getMessage());
+        }
+    }
+
+    static class Entry {
+        private String id;
+        private String fileName;
+        private long lastModified;
+        private long fileLength;
+        private String author;
+        private long created;
+        private int[] size;
+        private StructureStats stats;
+        private StructureMetadata metadata;
+
+        Entry(String id, Structure structure, File file) {
+            this.id = id;
+            this.fileName = file.getName();
+            this.lastModified = file.lastModified();
+            this.fileLength = file.length();
+            this.author = structure.getAuthor();
+            this.created = structure.getCreated();
+            this.size = structure.getSize();
+            this.stats = structure.getStats();
+            this.metadata = structure.getMetadata();
+        }
+
+        boolean matches(File file) {
+            return file.getName().equals(fileName)
+                    && file.lastModified() == lastModified
+                    && file.length() == fileLength;
+        }
+
+        public String getId() { return id; }
+        public String getAuthor() { return author; }
+        public long getCreated() { return created; }
+        public int[] getSize() { return size; }
+        public long getBlockCount() { return stats.getTotalBlocks(); }
+        public StructureStats getStats() { return stats; }
+        public StructureMetadata getMetadata() { return metadata; }
+    }
+
+    private static class IndexFile {
+        int version;
+        List<Entry> entries;
+    }
+}
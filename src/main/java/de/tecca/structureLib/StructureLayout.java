@@ -0,0 +1,25 @@
+package de.tecca.structureLib;
+
+enum StructureLayout {
+    // Greedy fill regions plus individual blocks
+    REGIONS("regions"),
+    // 16x16x16 sections with their own palettes, empty sections left out
+    SECTIONS("sections");
+
+    private final String name;
+
+    StructureLayout(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static StructureLayout byName(String name) {
+        for (StructureLayout layout : values()) {
+            if (layout.name.equalsIgnoreCase(name)) return layout;
+        }
+        return null;
+    }
+}
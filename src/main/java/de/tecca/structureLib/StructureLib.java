@@ -4,6 +4,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Objects;
 
 public class StructureLib extends JavaPlugin {
@@ -11,6 +12,7 @@ public class StructureLib extends JavaPlugin {
     private File structuresFolder;
     private MetadataBasedSpawner naturalSpawner;
     private StructureMetadataGUI metadataGUI;
+    private StructureFolderWatcher folderWatcher;
     private static StructureLib plugin;
 
     public static StructureLib getPlugin() {
@@ -20,8 +22,12 @@ public class StructureLib extends JavaPlugin {
     @Override
     public void onEnable() {
         plugin = this;
-        this.structureAPI = new StructureAPI();
+        saveDefaultConfig();
+
         this.structuresFolder = new File(getDataFolder(), "structures");
+        long cacheBytes = getConfig().getLong("cache.max-size-mb", 256) * 1024 * 1024;
+        boolean deduplicate = getConfig().getBoolean("storage.deduplicate", true);
+        this.structureAPI = new StructureAPI(structuresFolder, loadCodec(), loadLayout(), cacheBytes, deduplicate);
         this.naturalSpawner = new MetadataBasedSpawner(this);
         this.metadataGUI = new StructureMetadataGUI(this);
 
@@ -36,16 +42,62 @@ public class StructureLib extends JavaPlugin {
         Bukkit.getPluginManager().registerEvents(naturalSpawner, this);
         Bukkit.getPluginManager().registerEvents(metadataGUI, this);
 
+        long indexStart = System.currentTimeMillis();
+        StructureIndex index = structureAPI.getIndex();
+        index.load();
+        int reindexed = index.refresh();
+        getLogger().info("Indexed " + index.getEntries().size() + " structures (" + reindexed + " re-read) in "
+                + (System.currentTimeMillis() - indexStart) + "ms");
+
         naturalSpawner.loadAllActiveSpawners();
 
+        if (getConfig().getBoolean("storage.hot-reload", true)) {
+            this.folderWatcher = new StructureFolderWatcher(this);
+            try {
+                folderWatcher.start();
+            } catch (IOException e) {
+                getLogger().warning("Could not watch structures folder for changes: " + e.getMessage());
+            }
+        }
+
         getLogger().info("StructureLib enabled with metadata system!");
     }
 
     @Override
     public void onDisable() {
+        if (folderWatcher != null) {
+            folderWatcher.stop();
+        }
+        if (structureAPI != null) {
+            structureAPI.shutdown();
+
+            StructureRegistry registry = structureAPI.getRegistry();
+            getLogger().info("Structure cache: " + registry.getHits() + " hits, " + registry.getMisses() + " misses, "
+                    + registry.getEvictions() + " evictions");
+        }
         getLogger().info("StructureLib disabled!");
     }
 
+    private StructureCodec loadCodec() {
+        String name = getConfig().getString("storage.codec", "lz4");
+        StructureCodec codec = StructureCodec.byName(name);
+        if (codec == null) {
+            getLogger().warning("Unknown storage codec '" + name + "', falling back to lz4");
+            codec = StructureCodec.LZ4;
+        }
+        return codec;
+    }
+
+    private StructureLayout loadLayout() {
+        String name = getConfig().getString("storage.layout", "regions");
+        StructureLayout layout = StructureLayout.byName(name);
+        if (layout == null) {
+            getLogger().warning("Unknown storage layout '" + name + "', falling back to regions");
+            layout = StructureLayout.REGIONS;
+        }
+        return layout;
+    }
+
     public StructureAPI getStructureAPI() {
         return structureAPI;
     }
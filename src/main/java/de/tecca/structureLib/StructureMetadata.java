@@ -65,4 +65,32 @@ public class StructureMetadata {
     public Set<String> getTags() { return tags; }
     public String getCategory() { return category; }
     public void setCategory(String category) { this.category = category; }
+
+    public StructureMetadata copy() {
+        StructureMetadata copy = new StructureMetadata();
+        copy.setSourceDimension(sourceDimension);
+        copy.setSourceBiome(sourceBiome);
+        copy.setSourceY(sourceY);
+        copy.setSourceWorldType(sourceWorldType);
+        copy.getAllowedDimensions().addAll(allowedDimensions);
+        copy.getAllowedBiomes().addAll(allowedBiomes);
+        copy.getForbiddenBiomes().addAll(forbiddenBiomes);
+        copy.setSpawnHeightRange(spawnHeightRange != null ? new IntRange(spawnHeightRange.getMin(), spawnHeightRange.getMax()) : null);
+        copy.setSpawnChance(spawnChance);
+        copy.setMinDistanceFromSame(minDistanceFromSame);
+        copy.setMinDistanceFromAny(minDistanceFromAny);
+        copy.setNaturalSpawning(naturalSpawning);
+        copy.getTags().addAll(tags);
+        copy.setCategory(category);
+
+        SpawnConditions conditions = copy.getSpawnConditions();
+        conditions.setRequiresFlatGround(spawnConditions.isRequiresFlatGround());
+        conditions.setAvoidWater(spawnConditions.isAvoidWater());
+        conditions.setAvoidLava(spawnConditions.isAvoidLava());
+        conditions.setRequiresSkyAccess(spawnConditions.isRequiresSkyAccess());
+        conditions.setMaxSlope(spawnConditions.getMaxSlope());
+        conditions.setMinClearHeight(spawnConditions.getMinClearHeight());
+
+        return copy;
+    }
 }
\ No newline at end of file
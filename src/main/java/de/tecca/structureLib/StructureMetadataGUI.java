@@ -33,14 +33,11 @@ class StructureMetadataGUI implements Listener {
             String tempKey = player.getName() + ":" + structureId;
             StructureMetadata metadata = tempMetadata.get(tempKey);
 
-            if (metadata == null) {
-                Structure structure = plugin.getStructureAPI().loadStructure(new File(plugin.getStructuresFolder(), structureId + ".json"));
-                metadata = structure.getMetadata();
-
-                if (metadata == null) {
-                    metadata = new StructureMetadata();
-                }
+            Structure structure = plugin.getStructureAPI().getRegistry().get(structureId);
 
+            if (metadata == null) {
+                // getMetadata() returns a copy, so the cached structure stays untouched until the metadata is saved
+                metadata = structure.getMetadata() != null ? structure.getMetadata() : new StructureMetadata();
                 tempMetadata.put(tempKey, metadata);
             }
 
@@ -48,7 +45,6 @@ class StructureMetadataGUI implements Listener {
 
             Inventory gui = Bukkit.createInventory(null, 54, "§6Structure Metadata: " + structureId);
 
-            Structure structure = plugin.getStructureAPI().loadStructure(new File(plugin.getStructuresFolder(), structureId + ".json"));
             gui.setItem(4, createInfoItem(structure));
 
             gui.setItem(19, createDimensionItem(metadata));
@@ -1068,19 +1064,25 @@ class StructureMetadataGUI implements Listener {
 
     private void saveMetadata(Player player, String structureId, StructureMetadata metadata) {
         try {
-            File structureFile = new File(plugin.getStructuresFolder(), structureId + ".json");
-            Structure structure = plugin.getStructureAPI().loadStructure(structureFile);
-            structure.setMetadata(metadata);
-
-            plugin.getStructureAPI().saveStructure(structure, structureFile);
+            File structureFile = plugin.getStructureAPI().getStructureFile(structureId);
+            Structure structure = plugin.getStructureAPI().getRegistry().get(structureId).toBuilder()
+                    .setMetadata(metadata)
+                    .build();
 
             tempMetadata.remove(player.getName() + ":" + structureId);
             activeGUIPlayers.remove(player.getName());
             pendingAnvilInputs.remove(player.getName());
-
-            player.sendMessage("§aMetadata saved for structure: " + structureId);
             player.closeInventory();
 
+            plugin.getStructureAPI().saveStructureAsync(structure, structureFile).whenComplete((ignored, error) ->
+                    Bukkit.getScheduler().runTask(plugin, () -> {
+                        if (error != null) {
+                            player.sendMessage("§cFailed to save metadata: " + StructureAPI.describeError(error));
+                        } else {
+                            player.sendMessage("§aMetadata saved for structure: " + structureId);
+                        }
+                    }));
+
         } catch (Exception e) {
             player.sendMessage("§cFailed to save metadata: " + e.getMessage());
         }
@@ -12,13 +12,10 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
 import java.util.*;
+import java.util.logging.Level;
 
 class StructurePlacer {
     private static final int BLOCKS_PER_TICK = 100;
-    private static final Set<Material> PHYSICS_SENSITIVE = Set.of(
-            Material.SAND, Material.GRAVEL, Material.ANVIL, Material.SCAFFOLDING,
-            Material.RED_SAND, Material.POINTED_DRIPSTONE, Material.POWDER_SNOW
-    );
 
     private final StructureLib plugin;
     private final List<ContainerInfo> pendingContainers = new ArrayList<>();
@@ -54,214 +51,90 @@ class StructurePlacer {
         pendingContainers.clear();
 
         assert world != null;
+        PlacementPlan plan = plugin.getStructureAPI().getRegistry().getPlan(structure, rotation);
+
         boolean originalPhysics = world.isAutoSave();
-        if (getTotalBlocks(structure) > 1000) {
+        if (plan.size() > 1000) {
             world.setAutoSave(false);
         }
 
         try {
-            placePhase1(structure, location, world, rotation);
-            placePhase2(structure, location, world, rotation);
-            placePhase3(structure, location, world, rotation);
+            placeBlocks(plan, location, world);
 
             placeBlockEntities(structure, location, world, rotation, lootProcessor);
             placeEntities(structure, location, world, rotation);
 
-            postProcessConnectingBlocks(structure, location, world, rotation);
+            postProcessConnectingBlocks(plan, location, world);
 
             if (lootProcessor != null) {
                 processLootContainers(lootProcessor);
             }
 
         } finally {
-            if (getTotalBlocks(structure) > 1000) {
+            if (plan.size() > 1000) {
                 world.setAutoSave(originalPhysics);
             }
             pendingContainers.clear();
         }
     }
 
-    private void placePhase1(Structure structure, Location origin, World world, int rotation) {
-        for (BlockRegion region : structure.getRegions()) {
-            if (!requiresSpecialHandling(region)) {
-                placeBlockRegion(region, origin, world, rotation);
-            }
-        }
-    }
-
-    private void placePhase2(Structure structure, Location origin, World world, int rotation) {
-        for (BlockRegion region : structure.getRegions()) {
-            if (requiresSpecialHandling(region) && !isComplexBlock(region)) {
-                placeBlockRegion(region, origin, world, rotation);
-            }
-        }
-    }
+    // Offsets are already rotated and the block data prebuilt, so this is one world lookup per block
+    private void placeBlocks(PlacementPlan plan, Location origin, World world) {
+        int originX = origin.getBlockX();
+        int originY = origin.getBlockY();
+        int originZ = origin.getBlockZ();
+        int minY = world.getMinHeight();
+        // Exclusive: the highest buildable block is maxY - 1
+        int maxY = world.getMaxHeight();
 
-    private void placePhase3(Structure structure, Location origin, World world, int rotation) {
-        for (BlockRegion region : structure.getRegions()) {
-            if (isComplexBlock(region)) {
-                placeBlockRegion(region, origin, world, rotation);
-            }
-        }
-    }
+        int[] offsets = plan.getOffsets();
+        org.bukkit.block.data.BlockData[] states = plan.getStates();
 
-    private boolean requiresSpecialHandling(BlockRegion region) {
-        if (region.getType().equals("individual") && region.getBlocks() != null) {
-            return region.getBlocks().stream()
-                    .anyMatch(block -> PHYSICS_SENSITIVE.contains(Material.valueOf(block.getMaterial())));
-        }
+        for (int i = 0; i < states.length; i++) {
+            int y = originY + offsets[i * 3 + 1];
+            if (y < minY || y >= maxY) continue;
 
-        if (region.getMaterial() != null) {
-            return PHYSICS_SENSITIVE.contains(Material.valueOf(region.getMaterial()));
-        }
+            int x = originX + offsets[i * 3];
+            int z = originZ + offsets[i * 3 + 2];
 
-        return false;
-    }
-
-    private boolean isComplexBlock(BlockRegion region) {
-        if (region.getType().equals("individual") && region.getBlocks() != null) {
-            return region.getBlocks().stream()
-                    .anyMatch(block -> isDoorMaterial(Material.valueOf(block.getMaterial())) ||
-                            isMultiBlock(Material.valueOf(block.getMaterial())));
-        }
-
-        if (region.getMaterial() != null) {
-            Material material = Material.valueOf(region.getMaterial());
-            return isDoorMaterial(material) || isMultiBlock(material);
-        }
-
-        return false;
-    }
-
-    private boolean isMultipleFacingMaterial(Material material) {
-
-        String name = material.toString();
-
-        if (name.contains("_PANE")) return true;
-
-        if (name.contains("_FENCE") && !name.contains("_GATE")) return true;
-
-        switch (material) {
-            case IRON_BARS:           // MultipleFacing
-            case FIRE:                // Fire interface
-            case SOUL_FIRE:           // Fire interface
-            case TRIPWIRE:            // Tripwire interface
-            case GLOW_LICHEN:         // GlowLichen interface
-            case SCULK_VEIN:          // SculkVein interface
-            case VINE:                // MultipleFacing
-            case CHORUS_PLANT:        // MultipleFacing
-                return true;
-            default:
-                return false;
-        }
-    }
-
-
-    private boolean isMultiBlock(Material material) {
-        return material.toString().contains("BED") ||
-                material.toString().contains("DOOR") ||
-                material == Material.TALL_GRASS ||
-                material == Material.LARGE_FERN ||
-                material == Material.SUNFLOWER ||
-                material == Material.LILAC ||
-                material == Material.ROSE_BUSH ||
-                material == Material.PEONY;
-    }
-
-    private int getTotalBlocks(Structure structure) {
-        return structure.getRegions().stream()
-                .mapToInt(this::getRegionBlockCount)
-                .sum();
-    }
+            try {
+                world.getBlockAt(x, y, z).setBlockData(states[i], false);
+            } catch (Exception e) {
+                plugin.getLogger().severe("Failed to place block " + states[i].getMaterial() + " at " + x + ", " + y + ", " + z + ": " + e.getMessage());
+            }
 
-    private int getRegionBlockCount(BlockRegion region) {
-        switch (region.getType()) {
-            case "fill":
-            case "hollow":
-            case "plane":
-            case "line":
-                if (region.getStart() != null && region.getEnd() != null) {
-                    int[] start = region.getStart();
-                    int[] end = region.getEnd();
-                    return Math.abs((end[0] - start[0] + 1) * (end[1] - start[1] + 1) * (end[2] - start[2] + 1));
+            if ((i + 1) % BLOCKS_PER_TICK == 0) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
                 }
-                break;
-            case "individual":
-                return region.getBlocks() != null ? region.getBlocks().size() : 0;
+            }
         }
-        return 0;
     }
 
-    private void postProcessConnectingBlocks(Structure structure, Location origin, World world, int rotation) {
+    private void postProcessConnectingBlocks(PlacementPlan plan, Location origin, World world) {
         plugin.getLogger().info("Post-processing connecting blocks...");
 
-        Set<Location> connectingBlocks = new HashSet<>();
-
-        for (BlockRegion region : structure.getRegions()) {
-            collectMultipleFacingBlocks(region, origin, world, rotation, connectingBlocks);
-        }
+        int[] offsets = plan.getOffsets();
+        int[] connecting = plan.getConnecting();
 
-        plugin.getLogger().info("Found " + connectingBlocks.size() + " connecting blocks to update");
+        plugin.getLogger().info("Found " + connecting.length + " connecting blocks to update");
 
-        for (Location loc : connectingBlocks) {
-            updateConnections(loc);
+        for (int i : connecting) {
+            Location loc = new Location(world,
+                    origin.getBlockX() + offsets[i * 3],
+                    origin.getBlockY() + offsets[i * 3 + 1],
+                    origin.getBlockZ() + offsets[i * 3 + 2]);
+            if (isValidLocation(loc)) {
+                updateConnections(loc);
+            }
         }
 
         plugin.getLogger().info("Updated all connecting blocks");
     }
 
-    private void collectMultipleFacingBlocks(BlockRegion region, Location origin, World world, int rotation, Set<Location> connectingBlocks) {
-        switch (region.getType()) {
-            case "fill":
-            case "hollow":
-            case "plane":
-            case "line":
-                if (region.getMaterial() != null && isMultipleFacingMaterial(Material.valueOf(region.getMaterial()))) {
-                    addRegionBlocks(region, origin, rotation, connectingBlocks);
-                }
-                break;
-            case "individual":
-                if (region.getBlocks() != null) {
-                    for (BlockData blockData : region.getBlocks()) {
-                        Material material = Material.valueOf(blockData.getMaterial());
-                        if (isMultipleFacingMaterial(material)) {
-                            int[] pos = blockData.getPos();
-                            int[] rotatedPos = rotatePosition(pos[0], pos[1], pos[2], rotation);
-                            Location blockLoc = origin.clone().add(rotatedPos[0], rotatedPos[1], rotatedPos[2]);
-                            connectingBlocks.add(blockLoc);
-                        }
-                    }
-                }
-                break;
-        }
-    }
-
-    private void addRegionBlocks(BlockRegion region, Location origin, int rotation, Set<Location> connectingBlocks) {
-        int[] start = region.getStart();
-        int[] end = region.getEnd();
-
-        for (int x = start[0]; x <= end[0]; x++) {
-            for (int y = start[1]; y <= end[1]; y++) {
-                for (int z = start[2]; z <= end[2]; z++) {
-                    if (region.getType().equals("hollow")) {
-                        if (x == start[0] || x == end[0] ||
-                                y == start[1] || y == end[1] ||
-                                z == start[2] || z == end[2]) {
-
-                            int[] rotatedPos = rotatePosition(x, y, z, rotation);
-                            Location blockLoc = origin.clone().add(rotatedPos[0], rotatedPos[1], rotatedPos[2]);
-                            connectingBlocks.add(blockLoc);
-                        }
-                    } else {
-                        int[] rotatedPos = rotatePosition(x, y, z, rotation);
-                        Location blockLoc = origin.clone().add(rotatedPos[0], rotatedPos[1], rotatedPos[2]);
-                        connectingBlocks.add(blockLoc);
-                    }
-                }
-            }
-        }
-    }
-
     private void updateConnections(Location location) {
         try {
             Block block = Objects.requireNonNull(location.getWorld()).getBlockAt(location);
@@ -315,277 +188,6 @@ class StructurePlacer {
         return blockMaterial == neighborMaterial;
     }
 
-    private void placeBlockRegion(BlockRegion region, Location origin, World world, int rotation) {
-        switch (region.getType()) {
-            case "fill":
-                placeFillRegion(region, origin, world, rotation);
-                break;
-            case "hollow":
-                placeHollowRegion(region, origin, world, rotation);
-                break;
-            case "plane":
-                placePlaneRegion(region, origin, world, rotation);
-                break;
-            case "line":
-                placeLineRegion(region, origin, world, rotation);
-                break;
-            case "individual":
-                placeIndividualBlocks(region, origin, world, rotation);
-                break;
-        }
-    }
-
-    private void placeFillRegion(BlockRegion region, Location origin, World world, int rotation) {
-        Material material = Material.valueOf(region.getMaterial());
-        int[] start = region.getStart();
-        int[] end = region.getEnd();
-
-        int blockCount = 0;
-
-        for (int x = start[0]; x <= end[0]; x++) {
-            for (int y = start[1]; y <= end[1]; y++) {
-                for (int z = start[2]; z <= end[2]; z++) {
-                    int[] rotatedPos = rotatePosition(x, y, z, rotation);
-                    Location blockLoc = origin.clone().add(rotatedPos[0], rotatedPos[1], rotatedPos[2]);
-
-                    if (isValidLocation(blockLoc)) {
-                        Block block = world.getBlockAt(blockLoc);
-                        block.setType(material, false);
-
-                        if (region.getProperties() != null) {
-                            applyBlockProperties(block, region.getProperties(), rotation);
-                        }
-
-                        blockCount++;
-                        if (blockCount % BLOCKS_PER_TICK == 0) {
-                            try {
-                                Thread.sleep(1);
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                                break;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    private void placeHollowRegion(BlockRegion region, Location origin, World world, int rotation) {
-        Material material = Material.valueOf(region.getMaterial());
-        int[] start = region.getStart();
-        int[] end = region.getEnd();
-
-        int blockCount = 0;
-
-        for (int x = start[0]; x <= end[0]; x++) {
-            for (int y = start[1]; y <= end[1]; y++) {
-                for (int z = start[2]; z <= end[2]; z++) {
-                    if (x == start[0] || x == end[0] ||
-                            y == start[1] || y == end[1] ||
-                            z == start[2] || z == end[2]) {
-
-                        int[] rotatedPos = rotatePosition(x, y, z, rotation);
-                        Location blockLoc = origin.clone().add(rotatedPos[0], rotatedPos[1], rotatedPos[2]);
-
-                        if (isValidLocation(blockLoc)) {
-                            Block block = world.getBlockAt(blockLoc);
-                            block.setType(material, false);
-
-                            if (region.getProperties() != null) {
-                                applyBlockProperties(block, region.getProperties(), rotation);
-                            }
-
-                            blockCount++;
-                            if (blockCount % BLOCKS_PER_TICK == 0) {
-                                try {
-                                    Thread.sleep(1);
-                                } catch (InterruptedException e) {
-                                    Thread.currentThread().interrupt();
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    private void placePlaneRegion(BlockRegion region, Location origin, World world, int rotation) {
-        Material material = Material.valueOf(region.getMaterial());
-        int[] start = region.getStart();
-        int[] end = region.getEnd();
-
-        if (start[1] == end[1]) {
-            for (int x = start[0]; x <= end[0]; x++) {
-                for (int z = start[2]; z <= end[2]; z++) {
-                    int[] rotatedPos = rotatePosition(x, start[1], z, rotation);
-                    Location blockLoc = origin.clone().add(rotatedPos[0], rotatedPos[1], rotatedPos[2]);
-
-                    if (isValidLocation(blockLoc)) {
-                        Block block = world.getBlockAt(blockLoc);
-                        block.setType(material, false);
-
-                        if (region.getProperties() != null) {
-                            applyBlockProperties(block, region.getProperties(), rotation);
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    private void placeLineRegion(BlockRegion region, Location origin, World world, int rotation) {
-        Material material = Material.valueOf(region.getMaterial());
-        int[] start = region.getStart();
-        int[] end = region.getEnd();
-
-        if (start[0] != end[0]) {
-            for (int x = start[0]; x <= end[0]; x++) {
-                int[] rotatedPos = rotatePosition(x, start[1], start[2], rotation);
-                Location blockLoc = origin.clone().add(rotatedPos[0], rotatedPos[1], rotatedPos[2]);
-
-                if (isValidLocation(blockLoc)) {
-                    Block block = world.getBlockAt(blockLoc);
-                    block.setType(material, false);
-
-                    if (region.getProperties() != null) {
-                        applyBlockProperties(block, region.getProperties(), rotation);
-                    }
-                }
-            }
-        } else if (start[1] != end[1]) {
-            for (int y = start[1]; y <= end[1]; y++) {
-                int[] rotatedPos = rotatePosition(start[0], y, start[2], rotation);
-                Location blockLoc = origin.clone().add(rotatedPos[0], rotatedPos[1], rotatedPos[2]);
-
-                if (isValidLocation(blockLoc)) {
-                    Block block = world.getBlockAt(blockLoc);
-                    block.setType(material, false);
-
-                    if (region.getProperties() != null) {
-                        applyBlockProperties(block, region.getProperties(), rotation);
-                    }
-                }
-            }
-        } else if (start[2] != end[2]) {
-            for (int z = start[2]; z <= end[2]; z++) {
-                int[] rotatedPos = rotatePosition(start[0], start[1], z, rotation);
-                Location blockLoc = origin.clone().add(rotatedPos[0], rotatedPos[1], rotatedPos[2]);
-
-                if (isValidLocation(blockLoc)) {
-                    Block block = world.getBlockAt(blockLoc);
-                    block.setType(material, false);
-
-                    if (region.getProperties() != null) {
-                        applyBlockProperties(block, region.getProperties(), rotation);
-                    }
-                }
-            }
-        }
-    }
-
-    private void placeIndividualBlocks(BlockRegion region, Location origin, World world, int rotation) {
-        if (region.getBlocks() == null) return;
-
-        Map<String, List<BlockData>> doorPairs = new HashMap<>();
-        List<BlockData> otherBlocks = new ArrayList<>();
-
-        for (BlockData blockData : region.getBlocks()) {
-            Material material = Material.valueOf(blockData.getMaterial());
-            if (isDoorMaterial(material) && blockData.getProperties() != null) {
-                String facing = (String) blockData.getProperties().get("facing");
-                String half = (String) blockData.getProperties().get("half");
-
-                if (facing != null && half != null) {
-                    String doorKey = blockData.getPos()[0] + "," + blockData.getPos()[2] + "," + facing;
-                    doorPairs.computeIfAbsent(doorKey, k -> new ArrayList<>()).add(blockData);
-                } else {
-                    otherBlocks.add(blockData);
-                }
-            } else {
-                otherBlocks.add(blockData);
-            }
-        }
-
-        for (List<BlockData> doorBlocks : doorPairs.values()) {
-            if (doorBlocks.size() == 2) {
-                placeDoorPair(doorBlocks, origin, world, rotation);
-            } else {
-                otherBlocks.addAll(doorBlocks);
-            }
-        }
-
-        int blockCount = 0;
-        for (BlockData blockData : otherBlocks) {
-            int[] pos = blockData.getPos();
-            int[] rotatedPos = rotatePosition(pos[0], pos[1], pos[2], rotation);
-            Location blockLoc = origin.clone().add(rotatedPos[0], rotatedPos[1], rotatedPos[2]);
-
-            if (!isValidLocation(blockLoc)) continue;
-
-            Block block = world.getBlockAt(blockLoc);
-            Material material = Material.valueOf(blockData.getMaterial());
-
-            try {
-                if (isLogMaterial(material)) {
-                    block.setType(material, false);
-                    placeLog(block, blockData.getProperties(), rotation);
-                } else {
-                    block.setType(material, false);
-                    if (blockData.getProperties() != null) {
-                        applyBlockProperties(block, blockData.getProperties(), rotation);
-                    }
-                }
-            } catch (Exception e) {
-                plugin.getLogger().severe("Failed to place block " + material + " at " + blockLoc + ": " + e.getMessage());
-            }
-
-            blockCount++;
-            if (blockCount % BLOCKS_PER_TICK == 0) {
-                try {
-                    Thread.sleep(1);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-        }
-    }
-
-    private void placeDoorPair(List<BlockData> doorBlocks, Location origin, World world, int rotation) {
-        doorBlocks.sort((a, b) -> Integer.compare(a.getPos()[1], b.getPos()[1]));
-
-        BlockData lowerBlock = doorBlocks.get(0);
-        BlockData upperBlock = doorBlocks.get(1);
-
-        Material material = Material.valueOf(lowerBlock.getMaterial());
-
-        int[] lowerPos = lowerBlock.getPos();
-        int[] rotatedLowerPos = rotatePosition(lowerPos[0], lowerPos[1], lowerPos[2], rotation);
-        Location lowerLoc = origin.clone().add(rotatedLowerPos[0], rotatedLowerPos[1], rotatedLowerPos[2]);
-
-        int[] upperPos = upperBlock.getPos();
-        int[] rotatedUpperPos = rotatePosition(upperPos[0], upperPos[1], upperPos[2], rotation);
-        Location upperLoc = origin.clone().add(rotatedUpperPos[0], rotatedUpperPos[1], rotatedUpperPos[2]);
-
-        if (isValidLocation(lowerLoc) && isValidLocation(upperLoc)) {
-            Block lowerBlockObj = world.getBlockAt(lowerLoc);
-            Block upperBlockObj = world.getBlockAt(upperLoc);
-
-            lowerBlockObj.setType(material, false);
-            upperBlockObj.setType(material, false);
-
-            if (lowerBlock.getProperties() != null) {
-                applyBlockProperties(lowerBlockObj, lowerBlock.getProperties(), rotation);
-            }
-            if (upperBlock.getProperties() != null) {
-                applyBlockProperties(upperBlockObj, upperBlock.getProperties(), rotation);
-            }
-        }
-    }
-
     private void placeBlockEntities(Structure structure, Location origin, World world, int rotation, LootProcessor lootProcessor) {
         plugin.getLogger().info("Placing " + structure.getBlockEntities().size() + " block entities");
 
@@ -734,8 +336,7 @@ class StructurePlacer {
             }
 
         } catch (Exception e) {
-            plugin.getLogger().severe("Error filling container: " + e.getMessage());
-            e.printStackTrace();
+            plugin.getLogger().log(Level.SEVERE, "Error filling container: " + e.getMessage(), e);
         }
     }
 
@@ -1083,27 +684,6 @@ class StructurePlacer {
         return y >= location.getWorld().getMinHeight() && y <= location.getWorld().getMaxHeight();
     }
 
-    private void placeLog(Block block, Map<String, Object> properties, int rotation) {
-        if (properties == null) return;
-
-        org.bukkit.block.data.BlockData data = block.getBlockData();
-
-        if (data instanceof Orientable orientable) {
-            String axis = (String) properties.get("axis");
-
-            if (axis != null) {
-                try {
-                    Axis originalAxis = Axis.valueOf(axis);
-                    Axis rotatedAxis = rotateAxis(originalAxis, rotation);
-                    orientable.setAxis(rotatedAxis);
-                    block.setBlockData(orientable, false);
-                } catch (IllegalArgumentException e) {
-                    // Invalid axis, skip
-                }
-            }
-        }
-    }
-
     private int[] rotatePosition(int x, int y, int z, int rotation) {
         switch (rotation) {
             case 90:
@@ -1117,163 +697,6 @@ class StructurePlacer {
         }
     }
 
-    private void applyBlockProperties(Block block, Map<String, Object> properties, int rotation) {
-        org.bukkit.block.data.BlockData data = block.getBlockData();
-
-        try {
-            if (properties.containsKey("facing") && data instanceof Directional) {
-                org.bukkit.block.BlockFace facing = org.bukkit.block.BlockFace.valueOf((String) properties.get("facing"));
-                org.bukkit.block.BlockFace rotatedFacing = rotateFacing(facing, rotation);
-                ((Directional) data).setFacing(rotatedFacing);
-            }
-
-            if (properties.containsKey("half") && data instanceof Bisected) {
-                Bisected.Half half = Bisected.Half.valueOf((String) properties.get("half"));
-                ((Bisected) data).setHalf(half);
-            }
-
-            if (properties.containsKey("open") && data instanceof Openable) {
-                ((Openable) data).setOpen((Boolean) properties.get("open"));
-            }
-
-            if (properties.containsKey("powered") && data instanceof Powerable) {
-                ((Powerable) data).setPowered((Boolean) properties.get("powered"));
-            }
-
-            if (properties.containsKey("waterlogged") && data instanceof Waterlogged) {
-                ((Waterlogged) data).setWaterlogged((Boolean) properties.get("waterlogged"));
-            }
-
-            if (properties.containsKey("axis") && data instanceof Orientable) {
-                String axis = (String) properties.get("axis");
-                if (axis != null) {
-                    Axis originalAxis = Axis.valueOf(axis);
-                    Axis rotatedAxis = rotateAxis(originalAxis, rotation);
-                    ((Orientable) data).setAxis(rotatedAxis);
-                }
-            }
-
-            if (properties.containsKey("faces") && data instanceof MultipleFacing multipleFacing) {
-                Map<String, Boolean> savedFaces = (Map<String, Boolean>) properties.get("faces");
-                Set<String> allowedFaceNames = (Set<String>) properties.get("allowedFaces");
-
-                for (BlockFace face : multipleFacing.getAllowedFaces()) {
-                    multipleFacing.setFace(face, false);
-                }
-
-                for (Map.Entry<String, Boolean> entry : savedFaces.entrySet()) {
-                    try {
-                        BlockFace originalFace = BlockFace.valueOf(entry.getKey());
-                        BlockFace rotatedFace = rotateFaceForConnection(originalFace, rotation);
-                        Boolean connected = entry.getValue();
-
-                        if (multipleFacing.getAllowedFaces().contains(rotatedFace)) {
-                            multipleFacing.setFace(rotatedFace, connected);
-                        }
-                    } catch (IllegalArgumentException e) {
-                        // Ignore
-                    }
-                }
-            }
-
-            if (properties.containsKey("in_wall") && data instanceof Gate) {
-                ((Gate) data).setInWall((Boolean) properties.get("in_wall"));
-            }
-
-            block.setBlockData(data, false);
-
-        } catch (Exception e) {
-            plugin.getLogger().warning("Failed to apply properties to " + block.getType() + ": " + e.getMessage());
-        }
-    }
-
-    private BlockFace rotateFaceForConnection(BlockFace face, int rotation) {
-        switch (face) {
-            case NORTH:
-            case SOUTH:
-            case EAST:
-            case WEST:
-                return rotateFacing(face, rotation);
-            case UP:
-            case DOWN:
-            default:
-                return face;
-        }
-    }
-
-    private org.bukkit.block.BlockFace rotateFacing(org.bukkit.block.BlockFace facing, int rotation) {
-        switch (rotation) {
-            case 90:
-                switch (facing) {
-                    case NORTH:
-                        return org.bukkit.block.BlockFace.EAST;
-                    case EAST:
-                        return org.bukkit.block.BlockFace.SOUTH;
-                    case SOUTH:
-                        return org.bukkit.block.BlockFace.WEST;
-                    case WEST:
-                        return org.bukkit.block.BlockFace.NORTH;
-                    default:
-                        return facing;
-                }
-            case 180:
-                switch (facing) {
-                    case NORTH:
-                        return org.bukkit.block.BlockFace.SOUTH;
-                    case EAST:
-                        return org.bukkit.block.BlockFace.WEST;
-                    case SOUTH:
-                        return org.bukkit.block.BlockFace.NORTH;
-                    case WEST:
-                        return org.bukkit.block.BlockFace.EAST;
-                    default:
-                        return facing;
-                }
-            case 270:
-                switch (facing) {
-                    case NORTH:
-                        return org.bukkit.block.BlockFace.WEST;
-                    case EAST:
-                        return org.bukkit.block.BlockFace.NORTH;
-                    case SOUTH:
-                        return org.bukkit.block.BlockFace.EAST;
-                    case WEST:
-                        return org.bukkit.block.BlockFace.SOUTH;
-                    default:
-                        return facing;
-                }
-            default:
-                return facing;
-        }
-    }
-
-    private Axis rotateAxis(Axis axis, int rotation) {
-        if (rotation == 0 || rotation == 180) {
-            return axis;
-        }
-
-        switch (axis) {
-            case X:
-                return Axis.Z;
-            case Z:
-                return Axis.X;
-            default:
-                return axis;
-        }
-    }
-
-    private boolean isDoorMaterial(Material material) {
-        return material.toString().contains("DOOR") && !material.toString().contains("TRAPDOOR");
-    }
-
-    private boolean isLogMaterial(Material material) {
-        return material.toString().contains("LOG") ||
-                material.toString().contains("WOOD") ||
-                material == Material.HAY_BLOCK ||
-                material == Material.BONE_BLOCK ||
-                material.toString().contains("PILLAR");
-    }
-
     private double[] rotatePosition(double[] pos, int rotation) {
         double x = pos[0];
         double y = pos[1];
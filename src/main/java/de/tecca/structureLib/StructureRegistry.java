@@ -0,0 +1,220 @@
+package de.tecca.structureLib;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class StructureRegistry {
+    private static final long STRUCTURE_WEIGHT = 256;
+    private static final long REGION_WEIGHT = 96;
+    private static final long BLOCK_WEIGHT = 72;
+    private static final long PROPERTY_WEIGHT = 48;
+    private static final long BLOCK_ENTITY_WEIGHT = 128;
+    private static final long ENTITY_WEIGHT = 96;
+    private static final long DATA_ENTRY_WEIGHT = 64;
+
+    private final StructureAPI api;
+    private final long maxWeight;
+    private final LinkedHashMap<String, CachedStructure> cache;
+
+    // Blobs shared by several cached structures count towards the weight once
+    private final Map<String, SharedBlob> sharedBlobs = new HashMap<>();
+
+    // Cache key of each cached structure; the id inside a file need not match the file name it was loaded by
+    private final Map<Structure, String> keys = new IdentityHashMap<>();
+
+    private long weight;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public StructureRegistry(StructureAPI api, long maxWeight) {
+        this.api = api;
+        this.maxWeight = maxWeight;
+        this.cache = new LinkedHashMap<>(64, 0.75f, true);
+    }
+
+    public Structure get(String id) throws IOException {
+        long loadGeneration;
+        synchronized (this) {
+            CachedStructure cached = cache.get(id);
+            if (cached != null) {
+                hits++;
+                return cached.structure;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+
+        // Kept as loaded: lazily decoded regions stay in the file until a plan or the stats need them
+        Structure structure = api.loadStructure(api.getStructureFile(id));
+        long structureWeight = estimateWeight(structure);
+        Map<String, Long> blobs = StructureBinaryFormat.sharedRetainedBytes(structure.getRegions());
+        long blobWeight = blobs.values().stream().mapToLong(Long::longValue).sum();
+
+        synchronized (this) {
+            // Skip caching if the file was rewritten while we were reading it
+            if (loadGeneration == generation && structureWeight + blobWeight <= maxWeight) {
+                CachedStructure previous = cache.put(id, new CachedStructure(structure, structureWeight, blobs));
+                if (previous != null) {
+                    release(previous);
+                }
+                keys.put(structure, id);
+                weight += structureWeight;
+                for (Map.Entry<String, Long> blob : blobs.entrySet()) {
+                    SharedBlob shared = sharedBlobs.computeIfAbsent(blob.getKey(), key -> new SharedBlob(blob.getValue()));
+                    if (shared.references++ == 0) {
+                        weight += shared.weight;
+                    }
+                }
+                evictToBudget();
+            }
+        }
+
+        return structure;
+    }
+
+    // Plans are compiled once per rotation and live as long as their cached structure
+    public PlacementPlan getPlan(Structure structure, int rotation) {
+        int index = BlockStates.rotationIndex(rotation);
+        synchronized (this) {
+            CachedStructure cached = cachedFor(structure);
+            if (cached != null && cached.plans[index] != null) {
+                return cached.plans[index];
+            }
+        }
+
+        PlacementPlan plan = PlacementPlan.compile(structure, rotation);
+
+        synchronized (this) {
+            CachedStructure cached = cachedFor(structure);
+            if (cached != null && cached.plans[index] == null) {
+                cached.plans[index] = plan;
+                cached.weight += plan.retainedBytes();
+                weight += plan.retainedBytes();
+                evictToBudget();
+            }
+        }
+
+        return plan;
+    }
+
+    private CachedStructure cachedFor(Structure structure) {
+        String key = keys.get(structure);
+        CachedStructure cached = key != null ? cache.get(key) : null;
+        return cached != null && cached.structure == structure ? cached : null;
+    }
+
+    public synchronized void invalidate(String id) {
+        generation++;
+        CachedStructure removed = cache.remove(id);
+        if (removed != null) {
+            release(removed);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        cache.clear();
+        keys.clear();
+        sharedBlobs.clear();
+        weight = 0;
+    }
+
+    private void evictToBudget() {
+        Iterator<Map.Entry<String, CachedStructure>> iterator = cache.entrySet().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            CachedStructure evicted = iterator.next().getValue();
+            iterator.remove();
+            release(evicted);
+            evictions++;
+        }
+    }
+
+    private void release(CachedStructure removed) {
+        keys.remove(removed.structure);
+        weight -= removed.weight;
+        for (String hash : removed.blobs) {
+            SharedBlob shared = sharedBlobs.get(hash);
+            if (shared != null && --shared.references == 0) {
+                sharedBlobs.remove(hash);
+                weight -= shared.weight;
+            }
+        }
+    }
+
+    public synchronized int size() { return cache.size(); }
+    public synchronized long getWeight() { return weight; }
+    public long getMaxWeight() { return maxWeight; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+
+    static long estimateWeight(Structure structure) {
+        long total = STRUCTURE_WEIGHT;
+
+        List<BlockRegion> regions = structure.getRegions();
+        long lazyBytes = StructureBinaryFormat.lazyRetainedBytes(regions);
+        if (lazyBytes >= 0) {
+            total += lazyBytes;
+        } else {
+            for (BlockRegion region : regions) {
+                total += REGION_WEIGHT + propertyWeight(region.getProperties());
+                if (region instanceof SectionRegion section) {
+                    total += section.retainedBytes();
+                } else if (region.getBlocks() instanceof PackedBlockList packed) {
+                    total += packed.retainedBytes();
+                } else if (region.getBlocks() != null) {
+                    for (BlockData block : region.getBlocks()) {
+                        total += BLOCK_WEIGHT + propertyWeight(block.getProperties());
+                    }
+                }
+            }
+        }
+
+        if (structure.hasVolume()) {
+            total += structure.buildVolume().getRetainedBytes();
+        }
+
+        for (BlockEntity blockEntity : structure.getBlockEntities()) {
+            total += BLOCK_ENTITY_WEIGHT + blockEntity.getData().size() * DATA_ENTRY_WEIGHT;
+        }
+        for (EntityData entity : structure.getEntities()) {
+            total += ENTITY_WEIGHT + entity.getData().size() * DATA_ENTRY_WEIGHT;
+        }
+
+        return total;
+    }
+
+    private static long propertyWeight(Map<String, Object> properties) {
+        return properties != null ? properties.size() * PROPERTY_WEIGHT : 0;
+    }
+
+    private static class CachedStructure {
+        final Structure structure;
+        final PlacementPlan[] plans = new PlacementPlan[4];
+        final Set<String> blobs;
+        long weight;
+
+        CachedStructure(Structure structure, long weight, Map<String, Long> blobs) {
+            this.structure = structure;
+            this.weight = weight;
+            this.blobs = blobs.keySet();
+        }
+    }
+
+    private static class SharedBlob {
+        final long weight;
+        int references;
+
+        SharedBlob(long weight) {
+            this.weight = weight;
+        }
+    }
+}
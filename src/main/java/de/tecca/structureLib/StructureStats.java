@@ -0,0 +1,237 @@
+package de.tecca.structureLib;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Numbers derived from a structure's blocks, computed once and kept in the index alongside its metadata
+public final class StructureStats {
+    private long totalBlocks;
+    private long nonAirBlocks;
+    private int[] min;
+    private int[] max;
+    private Map<String, Long> materials;
+    private int blockEntities;
+    private int entities;
+
+    // One bit per x/z column that holds at least one non-air block, indexed z * footprintX + x
+    private int footprintX;
+    private int footprintZ;
+    private long[] footprint;
+
+    // Lowest non-air y of each occupied column, in the same order as the footprint bits. One entry per column
+    // is too much for the index, so copies read back from it have none and report the structure's lowest y.
+    private transient short[] columnBase;
+
+    private StructureStats() {
+    }
+
+    // Streams the stored regions instead of expanding a volume. Regions may overlap (JSON imports, hand-edited
+    // files) and the later one wins when placed, so they are walked last to first and only a cell's first visit
+    // counts; one bit per cell remembers which cells are taken. Bounds are those a placement expands into.
+    public static StructureStats compute(Structure structure) {
+        List<BlockRegion> regions = structure.getRegions();
+        int[] size = StructureVolume.extent(structure.getSize(), regions);
+        Counter counter = new Counter(size[0], size[1], size[2]);
+
+        for (int i = regions.size() - 1; i >= 0; i--) {
+            BlockRegion region = regions.get(i);
+            if (region instanceof SectionRegion || region.getType().equals("individual")) {
+                StructureVolume.forEachBlock(region, counter.palette, counter);
+            } else if (region.getStart() != null && region.getEnd() != null && region.getMaterial() != null) {
+                counter.addBox(region.getStart(), region.getEnd(), region.getType().equals("hollow"),
+                        counter.palette.idFor(region.getMaterial(), region.getProperties()));
+            }
+        }
+
+        StructureStats stats = counter.finish();
+        stats.blockEntities = structure.getBlockEntities().size();
+        stats.entities = structure.getEntities().size();
+        return stats;
+    }
+
+    public long getTotalBlocks() { return totalBlocks; }
+    public long getNonAirBlocks() { return nonAirBlocks; }
+    public int[] getMin() { return min.clone(); }
+    public int[] getMax() { return max.clone(); }
+    public Map<String, Long> getMaterials() { return Collections.unmodifiableMap(materials); }
+    public int getBlockEntities() { return blockEntities; }
+    public int getEntities() { return entities; }
+    public int getFootprintX() { return footprintX; }
+    public int getFootprintZ() { return footprintZ; }
+
+    public boolean isColumnOccupied(int x, int z) {
+        if (x < 0 || z < 0 || x >= footprintX || z >= footprintZ) return false;
+        int column = z * footprintX + x;
+        return (footprint[column >>> 6] & (1L << column)) != 0;
+    }
+
+    // Visits only the columns the structure touches, in z then x order
+    public void forEachColumn(ColumnVisitor visitor) {
+        int occupied = 0;
+        for (int word = 0; word < footprint.length; word++) {
+            long bits = footprint[word];
+            while (bits != 0) {
+                int column = (word << 6) + Long.numberOfTrailingZeros(bits);
+                visitor.visit(column % footprintX, column / footprintX, columnBase != null ? columnBase[occupied++] : min[1]);
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    public int getFootprintArea() {
+        int area = 0;
+        for (long word : footprint) {
+            area += Long.bitCount(word);
+        }
+        return area;
+    }
+
+    public interface ColumnVisitor {
+        void visit(int x, int z, int lowestY);
+    }
+
+    private static boolean isAir(String material) {
+        return material == null || material.equals("AIR") || material.equals("CAVE_AIR") || material.equals("VOID_AIR");
+    }
+
+    private static class Counter implements BlockVisitor {
+        private final BlockPalette palette = new BlockPalette();
+        private final int sizeX;
+        private final int sizeY;
+        private final int sizeZ;
+        private final BitSet taken;
+        private final long[] footprint;
+        private final short[] lowest;
+        private final int[] min = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        private final int[] max = {Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+
+        private long[] perId = new long[16];
+        private boolean[] air = new boolean[16];
+        private int known;
+
+        Counter(int sizeX, int sizeY, int sizeZ) {
+            long cellCount = (long) sizeX * sizeY * sizeZ;
+            if (cellCount > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Structure too large for stats: " + cellCount + " cells");
+            }
+
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.sizeZ = sizeZ;
+            this.taken = new BitSet((int) cellCount);
+            this.footprint = new long[(int) (((long) sizeX * sizeZ + 63) >>> 6)];
+            this.lowest = new short[sizeX * sizeZ];
+            Arrays.fill(lowest, Short.MAX_VALUE);
+        }
+
+        @Override
+        public void visit(int x, int y, int z, int paletteId) {
+            if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) return;
+
+            int index = (y * sizeZ + z) * sizeX + x;
+            if (taken.get(index)) return;
+            taken.set(index);
+            add(x, y, z, paletteId);
+        }
+
+        // Rows along x are claimed as bit ranges; only the cells no later region took are counted
+        void addBox(int[] start, int[] end, boolean hollow, int paletteId) {
+            int minX = Math.min(start[0], end[0]), maxX = Math.max(start[0], end[0]);
+            int minY = Math.min(start[1], end[1]), maxY = Math.max(start[1], end[1]);
+            int minZ = Math.min(start[2], end[2]), maxZ = Math.max(start[2], end[2]);
+
+            int fromX = Math.max(minX, 0), toX = Math.min(maxX, sizeX - 1);
+            if (fromX > toX) return;
+
+            for (int y = Math.max(minY, 0); y <= Math.min(maxY, sizeY - 1); y++) {
+                for (int z = Math.max(minZ, 0); z <= Math.min(maxZ, sizeZ - 1); z++) {
+                    if (!hollow || y == minY || y == maxY || z == minZ || z == maxZ) {
+                        addRow(y, z, fromX, toX, paletteId);
+                    } else {
+                        visit(minX, y, z, paletteId);
+                        visit(maxX, y, z, paletteId);
+                    }
+                }
+            }
+        }
+
+        private void addRow(int y, int z, int fromX, int toX, int paletteId) {
+            int row = (y * sizeZ + z) * sizeX;
+            for (int index = taken.nextClearBit(row + fromX); index <= row + toX; index = taken.nextClearBit(index + 1)) {
+                add(index - row, y, z, paletteId);
+            }
+            taken.set(row + fromX, row + toX + 1);
+        }
+
+        private void add(int x, int y, int z, int paletteId) {
+            if (count(paletteId, 1)) {
+                include(x, y, z, x, y, z);
+                column(x, z, y);
+            }
+        }
+
+        // Returns whether the cells are non-air
+        private boolean count(int paletteId, long cells) {
+            if (paletteId >= perId.length) {
+                perId = Arrays.copyOf(perId, Math.max(paletteId + 1, perId.length * 2));
+                air = Arrays.copyOf(air, perId.length);
+            }
+            while (known <= paletteId) {
+                air[known] = isAir(palette.get(known).getMaterial());
+                known++;
+            }
+            perId[paletteId] += cells;
+            return !air[paletteId];
+        }
+
+        private void include(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            if (minX < min[0]) min[0] = minX;
+            if (minY < min[1]) min[1] = minY;
+            if (minZ < min[2]) min[2] = minZ;
+            if (maxX > max[0]) max[0] = maxX;
+            if (maxY > max[1]) max[1] = maxY;
+            if (maxZ > max[2]) max[2] = maxZ;
+        }
+
+        private void column(int x, int z, int y) {
+            if (x < 0 || z < 0 || x >= sizeX || z >= sizeZ) return;
+
+            int column = z * sizeX + x;
+            footprint[column >>> 6] |= 1L << column;
+            if (y < lowest[column]) lowest[column] = (short) y;
+        }
+
+        StructureStats finish() {
+            StructureStats stats = new StructureStats();
+            stats.footprintX = sizeX;
+            stats.footprintZ = sizeZ;
+            stats.footprint = footprint;
+
+            short[] columnBase = new short[stats.getFootprintArea()];
+            int occupied = 0;
+            for (int column = 0; column < lowest.length; column++) {
+                if (lowest[column] != Short.MAX_VALUE) {
+                    columnBase[occupied++] = lowest[column];
+                }
+            }
+            stats.columnBase = columnBase;
+
+            Map<String, Long> materials = new TreeMap<>();
+            for (int id = 0; id < known; id++) {
+                if (perId[id] == 0) continue;
+                stats.totalBlocks += perId[id];
+                if (!air[id]) stats.nonAirBlocks += perId[id];
+                materials.merge(palette.get(id).getMaterial(), perId[id], Long::sum);
+            }
+
+            stats.materials = materials;
+            stats.min = stats.nonAirBlocks > 0 ? min : new int[3];
+            stats.max = stats.nonAirBlocks > 0 ? max : new int[3];
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,559 @@
+package de.tecca.structureLib;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.*;
+
+class StructureTypeAdapters implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+
+        if (rawType == Structure.class) {
+            return (TypeAdapter<T>) new StructureAdapter(gson.getAdapter(StructureMetadata.class));
+        }
+        if (rawType == BlockRegion.class) {
+            return (TypeAdapter<T>) new BlockRegionAdapter();
+        }
+        if (rawType == BlockData.class) {
+            return (TypeAdapter<T>) new BlockDataAdapter();
+        }
+        if (rawType == BlockEntity.class) {
+            return (TypeAdapter<T>) new BlockEntityAdapter();
+        }
+        if (rawType == EntityData.class) {
+            return (TypeAdapter<T>) new EntityDataAdapter();
+        }
+        return null;
+    }
+
+    private static class StructureAdapter extends TypeAdapter<Structure> {
+        private final TypeAdapter<StructureMetadata> metadataAdapter;
+        private final BlockRegionAdapter regionAdapter = new BlockRegionAdapter();
+        private final BlockEntityAdapter blockEntityAdapter = new BlockEntityAdapter();
+        private final EntityDataAdapter entityAdapter = new EntityDataAdapter();
+
+        StructureAdapter(TypeAdapter<StructureMetadata> metadataAdapter) {
+            this.metadataAdapter = metadataAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, Structure structure) throws IOException {
+            if (structure == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            writeString(out, "id", structure.getId());
+            writeString(out, "author", structure.getAuthor());
+            out.name("created").value(structure.getCreated());
+            writeIntArray(out, "size", structure.getSize());
+
+            out.name("regions").beginArray();
+            for (BlockRegion region : structure.getRegions()) {
+                regionAdapter.write(out, region);
+            }
+            out.endArray();
+
+            out.name("blockEntities").beginArray();
+            for (BlockEntity blockEntity : structure.getBlockEntities()) {
+                blockEntityAdapter.write(out, blockEntity);
+            }
+            out.endArray();
+
+            out.name("entities").beginArray();
+            for (EntityData entity : structure.getEntities()) {
+                entityAdapter.write(out, entity);
+            }
+            out.endArray();
+
+            if (structure.getMetadata() != null) {
+                out.name("metadata");
+                metadataAdapter.write(out, structure.getMetadata());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Structure read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            Structure.Builder structure = Structure.builder();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                    case "id":
+                        structure.setId(in.nextString());
+                        break;
+                    case "author":
+                        structure.setAuthor(in.nextString());
+                        break;
+                    case "created":
+                        structure.setCreated(in.nextLong());
+                        break;
+                    case "size":
+                        structure.setSize(readIntArray(in));
+                        break;
+                    case "regions":
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            structure.addRegion(regionAdapter.read(in));
+                        }
+                        in.endArray();
+                        break;
+                    case "blockEntities":
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            structure.addBlockEntity(blockEntityAdapter.read(in));
+                        }
+                        in.endArray();
+                        break;
+                    case "entities":
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            structure.addEntity(entityAdapter.read(in));
+                        }
+                        in.endArray();
+                        break;
+                    case "metadata":
+                        structure.setMetadata(metadataAdapter.read(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return structure.build();
+        }
+    }
+
+    private static class BlockRegionAdapter extends TypeAdapter<BlockRegion> {
+        private final BlockDataAdapter blockAdapter = new BlockDataAdapter();
+
+        @Override
+        public void write(JsonWriter out, BlockRegion region) throws IOException {
+            if (region == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            if (region instanceof SectionRegion) {
+                // JSON has no packed form, so a section is written as its individual blocks
+                writeString(out, "type", "individual");
+            } else {
+                writeString(out, "type", region.getType());
+                writeIntArray(out, "start", region.getStart());
+                writeIntArray(out, "end", region.getEnd());
+            }
+            writeString(out, "material", region.getMaterial());
+            if (region.getProperties() != null) {
+                out.name("properties");
+                writeValue(out, region.getProperties());
+            }
+            if (region.getBlocks() != null) {
+                out.name("blocks").beginArray();
+                for (BlockData block : region.getBlocks()) {
+                    blockAdapter.write(out, block);
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public BlockRegion read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            String type = null;
+            int[] start = null;
+            int[] end = null;
+            String material = null;
+            Map<String, Object> properties = null;
+            List<BlockData> blocks = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                    case "type":
+                        type = in.nextString();
+                        break;
+                    case "start":
+                        start = readIntArray(in);
+                        break;
+                    case "end":
+                        end = readIntArray(in);
+                        break;
+                    case "material":
+                        material = in.nextString();
+                        break;
+                    case "properties":
+                        properties = readObject(in);
+                        break;
+                    case "blocks":
+                        blocks = new ArrayList<>();
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            blocks.add(blockAdapter.read(in));
+                        }
+                        in.endArray();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            BlockRegion region = new BlockRegion(type);
+            region.setStart(start);
+            region.setEnd(end);
+            region.setMaterial(material);
+            region.setProperties(properties);
+            region.setBlocks(blocks);
+            return region;
+        }
+    }
+
+    private static class BlockDataAdapter extends TypeAdapter<BlockData> {
+
+        @Override
+        public void write(JsonWriter out, BlockData block) throws IOException {
+            if (block == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            writeIntArray(out, "pos", block.getPos());
+            writeString(out, "material", block.getMaterial());
+            if (block.getProperties() != null) {
+                out.name("properties");
+                writeValue(out, block.getProperties());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public BlockData read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            int[] pos = null;
+            String material = null;
+            Map<String, Object> properties = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                    case "pos":
+                        pos = readIntArray(in);
+                        break;
+                    case "material":
+                        material = in.nextString();
+                        break;
+                    case "properties":
+                        properties = readObject(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            BlockData block = new BlockData(pos, material);
+            block.setProperties(properties);
+            return block;
+        }
+    }
+
+    private static class BlockEntityAdapter extends TypeAdapter<BlockEntity> {
+
+        @Override
+        public void write(JsonWriter out, BlockEntity blockEntity) throws IOException {
+            if (blockEntity == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            writeIntArray(out, "pos", blockEntity.getPos());
+            writeString(out, "type", blockEntity.getType());
+            out.name("data");
+            writeValue(out, blockEntity.getData());
+            out.endObject();
+        }
+
+        @Override
+        public BlockEntity read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            int[] pos = null;
+            String type = null;
+            Map<String, Object> data = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                    case "pos":
+                        pos = readIntArray(in);
+                        break;
+                    case "type":
+                        type = in.nextString();
+                        break;
+                    case "data":
+                        data = readObject(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            BlockEntity blockEntity = new BlockEntity(pos, type);
+            if (data != null) {
+                blockEntity.getData().putAll(data);
+            }
+            return blockEntity;
+        }
+    }
+
+    private static class EntityDataAdapter extends TypeAdapter<EntityData> {
+
+        @Override
+        public void write(JsonWriter out, EntityData entity) throws IOException {
+            if (entity == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            if (entity.getPos() != null) {
+                out.name("pos").beginArray();
+                for (double value : entity.getPos()) {
+                    out.value(value);
+                }
+                out.endArray();
+            }
+            writeString(out, "type", entity.getType());
+            out.name("data");
+            writeValue(out, entity.getData());
+            out.endObject();
+        }
+
+        @Override
+        public EntityData read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            double[] pos = null;
+            String type = null;
+            Map<String, Object> data = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                    case "pos":
+                        pos = readDoubleArray(in);
+                        break;
+                    case "type":
+                        type = in.nextString();
+                        break;
+                    case "data":
+                        data = readObject(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            EntityData entity = new EntityData(pos, type);
+            if (data != null) {
+                entity.getData().putAll(data);
+            }
+            return entity;
+        }
+    }
+
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    private static void writeIntArray(JsonWriter out, String name, int[] values) throws IOException {
+        if (values == null) return;
+
+        out.name(name).beginArray();
+        for (int value : values) {
+            out.value(value);
+        }
+        out.endArray();
+    }
+
+    private static void writeValue(JsonWriter out, Object value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else if (value instanceof Boolean bool) {
+            out.value(bool);
+        } else if (value instanceof Number number) {
+            out.value(number);
+        } else if (value instanceof Collection<?> collection) {
+            out.beginArray();
+            for (Object element : collection) {
+                writeValue(out, element);
+            }
+            out.endArray();
+        } else if (value instanceof Map<?, ?> map) {
+            out.beginObject();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                out.name(String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+            out.endObject();
+        } else {
+            out.value(value.toString());
+        }
+    }
+
+    private static int[] readIntArray(JsonReader in) throws IOException {
+        int[] values = new int[3];
+        int count = 0;
+
+        in.beginArray();
+        while (in.hasNext()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = in.nextInt();
+        }
+        in.endArray();
+
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    private static double[] readDoubleArray(JsonReader in) throws IOException {
+        double[] values = new double[3];
+        int count = 0;
+
+        in.beginArray();
+        while (in.hasNext()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = in.nextDouble();
+        }
+        in.endArray();
+
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    private static Map<String, Object> readObject(JsonReader in) throws IOException {
+        Map<String, Object> map = new LinkedHashMap<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            map.put(name, readValue(in));
+        }
+        in.endObject();
+
+        return map;
+    }
+
+    private static Object readValue(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(in);
+            case BEGIN_ARRAY: {
+                List<Object> list = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    list.add(readValue(in));
+                }
+                in.endArray();
+                return list;
+            }
+            case STRING:
+                return in.nextString();
+            case NUMBER:
+                return readNumber(in.nextString());
+            case BOOLEAN:
+                return in.nextBoolean();
+            case NULL:
+                in.nextNull();
+                return null;
+            default:
+                throw new IOException("Unexpected token " + in.peek() + " at " + in.getPath());
+        }
+    }
+
+    private static Number readNumber(String literal) {
+        if (literal.indexOf('.') >= 0 || literal.indexOf('e') >= 0 || literal.indexOf('E') >= 0) {
+            return Double.parseDouble(literal);
+        }
+
+        try {
+            long value = Long.parseLong(literal);
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            return Double.parseDouble(literal);
+        }
+    }
+}
\ No newline at end of file
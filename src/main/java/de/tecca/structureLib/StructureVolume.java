@@ -0,0 +1,440 @@
+package de.tecca.structureLib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Block states of a structure as palette indices over its bounding box instead of one object per block
+class StructureVolume {
+    private static final long MAX_DENSE_CELLS = 1L << 26;
+    private static final int SPARSE_ENTRY_BYTES = 12;
+    private static final int SECTION_MASK = (1 << 17) - 1;
+
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final BlockPalette palette;
+
+    // Dense cells hold palette id + 1 so that 0 means "not part of the structure"
+    private short[] cells;
+    private int[] wideCells;
+
+    // Sparse cells are packed coordinates in section order with their palette ids
+    private long[] keys;
+    private int[] ids;
+    private int sparseSize;
+    private boolean sorted;
+
+    private int blockCount;
+
+    public StructureVolume(int sizeX, int sizeY, int sizeZ) {
+        this(sizeX, sizeY, sizeZ, new BlockPalette());
+    }
+
+    StructureVolume(int sizeX, int sizeY, int sizeZ, BlockPalette palette) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.palette = palette;
+
+        long cellCount = (long) sizeX * sizeY * sizeZ;
+        if (cellCount <= MAX_DENSE_CELLS) {
+            this.cells = new short[(int) cellCount];
+        } else {
+            this.keys = new long[1024];
+            this.ids = new int[1024];
+            this.sorted = true;
+        }
+    }
+
+    public static StructureVolume fromRegions(int[] size, List<BlockRegion> regions) {
+        return fromRegions(size, regions, new BlockPalette());
+    }
+
+    // Expands stored regions; later regions overwrite earlier ones, as they did when placed one after another
+    static StructureVolume fromRegions(int[] size, List<BlockRegion> regions, BlockPalette palette) {
+        int[] extent = extent(size, regions);
+        StructureVolume volume = new StructureVolume(extent[0], extent[1], extent[2], palette);
+        for (BlockRegion region : regions) {
+            forEachBlock(region, volume.palette, volume::set);
+        }
+
+        volume.compact();
+        return volume;
+    }
+
+    // The stored size, grown to fit regions that reach past it; what fromRegions allocates
+    static int[] extent(int[] size, List<BlockRegion> regions) {
+        int sizeX = size != null ? size[0] : 0;
+        int sizeY = size != null ? size[1] : 0;
+        int sizeZ = size != null ? size[2] : 0;
+
+        for (BlockRegion region : regions) {
+            if (region.getType().equals("individual")) {
+                if (region.getBlocks() == null) continue;
+                for (BlockData block : region.getBlocks()) {
+                    int[] pos = block.pos();
+                    sizeX = Math.max(sizeX, pos[0] + 1);
+                    sizeY = Math.max(sizeY, pos[1] + 1);
+                    sizeZ = Math.max(sizeZ, pos[2] + 1);
+                }
+            } else if (region.getStart() != null && region.getEnd() != null) {
+                int[] start = region.getStart();
+                int[] end = region.getEnd();
+                sizeX = Math.max(sizeX, Math.max(start[0], end[0]) + 1);
+                sizeY = Math.max(sizeY, Math.max(start[1], end[1]) + 1);
+                sizeZ = Math.max(sizeZ, Math.max(start[2], end[2]) + 1);
+            }
+        }
+        return new int[] {sizeX, sizeY, sizeZ};
+    }
+
+    // The block states of the regions, with the same ids fromRegions gives them; sealed, so volumes can share it
+    static BlockPalette paletteOf(List<BlockRegion> regions) {
+        BlockPalette palette = new BlockPalette();
+        for (BlockRegion region : regions) {
+            forEachBlock(region, palette, null);
+        }
+        palette.seal();
+        return palette;
+    }
+
+    // The one place stored regions are expanded into blocks; ids come from the given palette.
+    // A null visitor only resolves the ids, in the order a visit would.
+    static void forEachBlock(BlockRegion region, BlockPalette palette, BlockVisitor visitor) {
+        if (region instanceof SectionRegion section) {
+            BlockPalette.Entry[] entries = section.getPalette();
+            int[] ids = new int[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                ids[i] = palette.idFor(entries[i]);
+            }
+            if (visitor != null) {
+                section.forEach((x, y, z, localId) -> visitor.visit(x, y, z, ids[localId]));
+            }
+            return;
+        }
+
+        if (region.getType().equals("individual")) {
+            if (region.getBlocks() instanceof PackedBlockList packed) {
+                packed.forEach(palette, visitor);
+                return;
+            }
+            if (region.getBlocks() == null) return;
+            for (BlockData block : region.getBlocks()) {
+                int id = palette.idFor(block.getMaterial(), block.getProperties());
+                if (visitor != null) {
+                    int[] pos = block.pos();
+                    visitor.visit(pos[0], pos[1], pos[2], id);
+                }
+            }
+            return;
+        }
+
+        int[] start = region.getStart();
+        int[] end = region.getEnd();
+        if (start == null || end == null || region.getMaterial() == null) return;
+
+        int id = palette.idFor(region.getMaterial(), region.getProperties());
+        if (visitor == null) return;
+
+        int minX = Math.min(start[0], end[0]);
+        int minY = Math.min(start[1], end[1]);
+        int minZ = Math.min(start[2], end[2]);
+        int maxX = Math.max(start[0], end[0]);
+        int maxY = Math.max(start[1], end[1]);
+        int maxZ = Math.max(start[2], end[2]);
+
+        // Planes and lines are cuboids with a thickness of one, so only hollow boxes need the shell test
+        if (!region.getType().equals("hollow")) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    for (int x = minX; x <= maxX; x++) {
+                        visitor.visit(x, y, z, id);
+                    }
+                }
+            }
+            return;
+        }
+
+        for (int y = minY; y <= maxY; y++) {
+            boolean capY = y == minY || y == maxY;
+            for (int z = minZ; z <= maxZ; z++) {
+                if (capY || z == minZ || z == maxZ) {
+                    for (int x = minX; x <= maxX; x++) {
+                        visitor.visit(x, y, z, id);
+                    }
+                } else {
+                    visitor.visit(minX, y, z, id);
+                    if (maxX != minX) visitor.visit(maxX, y, z, id);
+                }
+            }
+        }
+    }
+
+    public int idFor(String material, Map<String, Object> properties) {
+        return palette.idFor(material, properties);
+    }
+
+    // Palette id at a position, or -1 if the structure leaves that cell untouched
+    public int get(int x, int y, int z) {
+        if (!contains(x, y, z)) return -1;
+
+        if (cells != null) {
+            return (cells[index(x, y, z)] & 0xFFFF) - 1;
+        }
+        if (wideCells != null) {
+            return wideCells[index(x, y, z)] - 1;
+        }
+
+        ensureSorted();
+        int found = Arrays.binarySearch(keys, 0, sparseSize, pack(x, y, z));
+        return found >= 0 ? ids[found] : -1;
+    }
+
+    public void set(int x, int y, int z, int id) {
+        if (!contains(x, y, z)) return;
+
+        if (cells != null && id + 1 > 0xFFFF) {
+            widen();
+        }
+
+        if (cells != null) {
+            int index = index(x, y, z);
+            updateCount(cells[index] != 0, id >= 0);
+            cells[index] = (short) (id + 1);
+        } else if (wideCells != null) {
+            int index = index(x, y, z);
+            updateCount(wideCells[index] != 0, id >= 0);
+            wideCells[index] = id + 1;
+        } else {
+            if (sparseSize == keys.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            long key = pack(x, y, z);
+            if (sparseSize > 0 && keys[sparseSize - 1] >= key) {
+                sorted = false;
+            }
+            keys[sparseSize] = key;
+            ids[sparseSize] = id;
+            sparseSize++;
+        }
+    }
+
+    // Switches to sparse storage when that is smaller; call once the volume is filled
+    public void compact() {
+        if (keys != null) {
+            ensureSorted();
+            return;
+        }
+
+        long denseBytes = cells != null ? cells.length * 2L : wideCells.length * 4L;
+        if ((long) blockCount * SPARSE_ENTRY_BYTES >= denseBytes) return;
+
+        long[] sparseKeys = new long[blockCount];
+        int[] sparseIds = new int[blockCount];
+        int[] count = new int[1];
+        forEach((x, y, z, id) -> {
+            sparseKeys[count[0]] = pack(x, y, z);
+            sparseIds[count[0]] = id;
+            count[0]++;
+        });
+
+        keys = sparseKeys;
+        ids = sparseIds;
+        sparseSize = blockCount;
+        sorted = true;
+        cells = null;
+        wideCells = null;
+    }
+
+    // Visits every occupied cell one 16x16x16 section at a time, sections and cells bottom-up in y, z, x order
+    public void forEach(BlockVisitor visitor) {
+        if (keys != null) {
+            ensureSorted();
+            for (int i = 0; i < sparseSize; i++) {
+                long key = keys[i];
+                visitor.visit(unpackX(key), unpackY(key), unpackZ(key), ids[i]);
+            }
+            return;
+        }
+
+        for (int sectionY = 0; sectionY < sizeY; sectionY += 16) {
+            for (int sectionZ = 0; sectionZ < sizeZ; sectionZ += 16) {
+                for (int sectionX = 0; sectionX < sizeX; sectionX += 16) {
+                    forEachInSection(sectionX, sectionY, sectionZ, visitor);
+                }
+            }
+        }
+    }
+
+    // Positions rotated around the origin like a placement, then shifted by the offset
+    public void forEach(BlockVisitor visitor, int rotation, int offsetX, int offsetY, int offsetZ) {
+        forEach(rotated(visitor, rotation, offsetX, offsetY, offsetZ));
+    }
+
+    static BlockVisitor rotated(BlockVisitor visitor, int rotation, int offsetX, int offsetY, int offsetZ) {
+        return switch (BlockStates.rotationIndex(rotation)) {
+            case 1 -> (x, y, z, id) -> visitor.visit(offsetX - z, offsetY + y, offsetZ + x, id);
+            case 2 -> (x, y, z, id) -> visitor.visit(offsetX - x, offsetY + y, offsetZ - z, id);
+            case 3 -> (x, y, z, id) -> visitor.visit(offsetX + z, offsetY + y, offsetZ - x, id);
+            default -> (x, y, z, id) -> visitor.visit(offsetX + x, offsetY + y, offsetZ + z, id);
+        };
+    }
+
+    private void forEachInSection(int sectionX, int sectionY, int sectionZ, BlockVisitor visitor) {
+        int maxX = Math.min(sectionX + 16, sizeX);
+        int maxY = Math.min(sectionY + 16, sizeY);
+        int maxZ = Math.min(sectionZ + 16, sizeZ);
+
+        for (int y = sectionY; y < maxY; y++) {
+            for (int z = sectionZ; z < maxZ; z++) {
+                int index = index(sectionX, y, z);
+                for (int x = sectionX; x < maxX; x++, index++) {
+                    int id = cells != null ? (cells[index] & 0xFFFF) - 1 : wideCells[index] - 1;
+                    if (id >= 0) {
+                        visitor.visit(x, y, z, id);
+                    }
+                }
+            }
+        }
+    }
+
+    // Splits the volume into chunk-section sized regions; sections without blocks are left out
+    public List<BlockRegion> toSections() {
+        List<BlockRegion> sections = new ArrayList<>();
+        SectionRegion.Builder[] current = new SectionRegion.Builder[1];
+
+        forEach((x, y, z, paletteId) -> {
+            if (current[0] == null || !current[0].contains(x, y, z)) {
+                if (current[0] != null) {
+                    sections.add(current[0].build(sizeX, sizeY, sizeZ));
+                }
+                current[0] = new SectionRegion.Builder(x & ~15, y & ~15, z & ~15);
+            }
+            current[0].set(x, y, z, palette.get(paletteId));
+        });
+
+        if (current[0] != null) {
+            sections.add(current[0].build(sizeX, sizeY, sizeZ));
+        }
+        return sections;
+    }
+
+    public BlockData getBlockData(int x, int y, int z) {
+        int id = get(x, y, z);
+        if (id < 0) return null;
+
+        BlockPalette.Entry entry = palette.get(id);
+        BlockData block = new BlockData(new int[]{x, y, z}, entry.getMaterial());
+        block.setProperties(entry.getProperties());
+        return block;
+    }
+
+    public BlockPalette getPalette() { return palette; }
+    public int getSizeX() { return sizeX; }
+    public int getSizeY() { return sizeY; }
+    public int getSizeZ() { return sizeZ; }
+    public int getBlockCount() {
+        if (keys != null) {
+            ensureSorted();
+            return sparseSize;
+        }
+        return blockCount;
+    }
+
+    public long getRetainedBytes() {
+        long total = 64 + palette.size() * 128L;
+        if (cells != null) return total + cells.length * 2L;
+        if (wideCells != null) return total + wideCells.length * 4L;
+        return total + keys.length * 8L + ids.length * 4L;
+    }
+
+    // Section coordinates first, then the position inside the 16x16x16 section, so sorted keys run section by section
+    static long pack(int x, int y, int z) {
+        return ((long) ((y >> 4) & SECTION_MASK) << 46) | ((long) ((z >> 4) & SECTION_MASK) << 29)
+                | ((long) ((x >> 4) & SECTION_MASK) << 12) | ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    static int unpackX(long key) { return (int) (key << 35 >> 47) << 4 | (int) (key & 15); }
+    static int unpackY(long key) { return (int) (key << 1 >> 47) << 4 | (int) ((key >> 8) & 15); }
+    static int unpackZ(long key) { return (int) (key << 18 >> 47) << 4 | (int) ((key >> 4) & 15); }
+
+    private boolean contains(int x, int y, int z) {
+        return x >= 0 && y >= 0 && z >= 0 && x < sizeX && y < sizeY && z < sizeZ;
+    }
+
+    private int index(int x, int y, int z) {
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
+    private void updateCount(boolean wasSet, boolean isSet) {
+        if (wasSet != isSet) {
+            blockCount += isSet ? 1 : -1;
+        }
+    }
+
+    private void widen() {
+        wideCells = new int[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            wideCells[i] = cells[i] & 0xFFFF;
+        }
+        cells = null;
+    }
+
+    // Sorts appended cells by position; for duplicates the last write wins, cleared cells are dropped
+    private synchronized void ensureSorted() {
+        if (sorted) return;
+
+        int[] order = new int[sparseSize];
+        for (int i = 0; i < sparseSize; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[sparseSize], 0, sparseSize);
+
+        long[] sortedKeys = new long[sparseSize];
+        int[] sortedIds = new int[sparseSize];
+        int size = 0;
+        for (int i = 0; i < sparseSize; i++) {
+            int source = order[i];
+            if (size > 0 && sortedKeys[size - 1] == keys[source]) {
+                size--;
+            }
+            sortedKeys[size] = keys[source];
+            sortedIds[size] = ids[source];
+            size++;
+        }
+
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (sortedIds[i] < 0) continue;
+            sortedKeys[kept] = sortedKeys[i];
+            sortedIds[kept] = sortedIds[i];
+            kept++;
+        }
+        size = kept;
+
+        keys = Arrays.copyOf(sortedKeys, size);
+        ids = Arrays.copyOf(sortedIds, size);
+        sparseSize = size;
+        sorted = true;
+    }
+
+    // Stable, so equal positions keep their write order
+    private void mergeSort(int[] order, int[] buffer, int from, int to) {
+        if (to - from < 2) return;
+
+        int middle = (from + to) >>> 1;
+        mergeSort(order, buffer, from, middle);
+        mergeSort(order, buffer, middle, to);
+
+        int left = from, right = middle, out = from;
+        while (left < middle && right < to) {
+            buffer[out++] = keys[order[right]] < keys[order[left]] ? order[right++] : order[left++];
+        }
+        while (left < middle) buffer[out++] = order[left++];
+        while (right < to) buffer[out++] = order[right++];
+        System.arraycopy(buffer, from, order, from, to - from);
+    }
+}